@@ -0,0 +1,114 @@
+package fr.diginamic.springdemo.benchmarks;
+
+import fr.diginamic.springdemo.entities.City;
+import fr.diginamic.springdemo.entities.Department;
+import fr.diginamic.springdemo.utils.CensusFileParser;
+import fr.diginamic.springdemo.utils.CensusRowReader;
+import fr.diginamic.springdemo.utils.ImportReport;
+import fr.diginamic.springdemo.utils.ImportUtils;
+import fr.diginamic.springdemo.utils.TopCities;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVRecord;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the parsing stages of the census import, on the bundled recensement.csv
+ * @see CensusRowReader
+ * @see CensusFileParser
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParsingBenchmark {
+
+    /**
+     * The number of parsing threads of the parallel parser
+     */
+    @Param({"1", "4", "16"})
+    public int threads;
+
+    /**
+     * The content of the census file
+     */
+    private byte[] census;
+
+    /**
+     * A copy of the census file, for the memory-mapped parser
+     */
+    private Path file;
+
+    @Setup
+    public void setUp() throws IOException {
+        try (InputStream in = Objects.requireNonNull(getClass().getClassLoader().getResourceAsStream("recensement.csv"))) {
+            census = in.readAllBytes();
+        }
+        file = Files.createTempFile("recensement", ".csv");
+        Files.write(file, census);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Baseline: commons-csv records read by header name, as the import originally did
+     */
+    @Benchmark
+    public void commonsCsv(Blackhole blackhole) throws IOException {
+        Iterable<CSVRecord> records = CSVFormat.Builder
+                .create(CSVFormat.EXCEL)
+                .setDelimiter(';')
+                .setHeader(ImportUtils.CENSUS_HEADERS)
+                .setSkipHeaderRecord(true)
+                .build()
+                .parse(new InputStreamReader(new ByteArrayInputStream(census), StandardCharsets.UTF_8));
+        for (CSVRecord record : records) {
+            City city = new City();
+            city.setName(record.get("nameCommune").trim());
+            city.setPopulation(Integer.parseInt(record.get("populationTotale").replaceAll(" ", "")));
+            city.setDepartment(new Department(record.get("codeDepartment").trim()));
+            blackhole.consume(city);
+        }
+    }
+
+    /**
+     * Byte-level parsing and row-to-City mapping of the whole file
+     */
+    @Benchmark
+    public void rowReader(Blackhole blackhole) throws IOException {
+        new CensusRowReader(ImportUtils.CENSUS_HEADERS).readAll(new ByteArrayInputStream(census), blackhole::consume, new ImportReport());
+    }
+
+    /**
+     * Byte-level parsing followed by the top-K selection of the 1000 most populated cities
+     */
+    @Benchmark
+    public TopCities topThousand() throws IOException {
+        TopCities cities = new TopCities(1000);
+        new CensusRowReader(ImportUtils.CENSUS_HEADERS).readAll(new ByteArrayInputStream(census), cities::offer, new ImportReport());
+        return cities;
+    }
+
+    /**
+     * Memory-mapped, parallel parsing and selection of every city
+     */
+    @Benchmark
+    public TopCities parallelParser() throws IOException {
+        return new CensusFileParser(ImportUtils.CENSUS_HEADERS).parse(file, threads, Integer.MAX_VALUE, new ImportReport());
+    }
+}
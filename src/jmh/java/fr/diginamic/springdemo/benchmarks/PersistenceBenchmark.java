@@ -0,0 +1,146 @@
+package fr.diginamic.springdemo.benchmarks;
+
+import fr.diginamic.springdemo.SpringDemoApplication;
+import fr.diginamic.springdemo.repositories.DepartmentRepository;
+import fr.diginamic.springdemo.utils.CensusRowReader;
+import fr.diginamic.springdemo.utils.ImportOptions;
+import fr.diginamic.springdemo.utils.ImportReport;
+import fr.diginamic.springdemo.utils.ImportUtils;
+import fr.diginamic.springdemo.utils.TopCities;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Benchmarks of the database stages of the census import, against an in-memory H2 database.
+ * Departments are seeded up front so that no department name is fetched during a measurement,
+ * and the in-memory city indexes do not follow the writes, so that their reloads are not measured.
+ * @see ImportUtils
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PersistenceBenchmark {
+
+    /**
+     * The engine writing the cities
+     */
+    @Param({"JPA", "NATIVE"})
+    public ImportOptions.Engine engine;
+
+    /**
+     * The number of cities written per transaction
+     */
+    @Param({"1000"})
+    public int chunkSize;
+
+    /**
+     * The application context
+     */
+    private ConfigurableApplicationContext context;
+
+    /**
+     * The content of the census file
+     */
+    private byte[] census;
+
+    /**
+     * The department codes of the census
+     */
+    private Set<String> codes;
+
+    /**
+     * The cities to write, parsed again before each invocation since persisted entities cannot be reused
+     */
+    private TopCities selection;
+
+    /**
+     * The report of the last write, to print the duration of each stage
+     */
+    private ImportReport report;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        context = new SpringApplicationBuilder(SpringDemoApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1",
+                        "spring.jpa.hibernate.ddl-auto=create",
+                        "spring.jpa.show-sql=false",
+                        "import.on-startup=false",
+                        "cities.indexes.enabled=false",
+                        "department.names.remote=stub")
+                .run();
+        try (InputStream in = Objects.requireNonNull(getClass().getClassLoader().getResourceAsStream("recensement.csv"))) {
+            census = in.readAllBytes();
+        }
+        codes = parse().toSortedList().stream().map(city -> city.getDepartment().getCode()).collect(Collectors.toSet());
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        List<Object[]> departments = codes.stream().map(code -> new Object[]{code, code}).toList();
+        jdbcTemplate.batchUpdate("insert into department (code, name) values (?, ?)", departments);
+    }
+
+    @Setup(Level.Invocation)
+    public void prepare() throws IOException {
+        context.getBean(JdbcTemplate.class).update("delete from cities");
+        selection = parse();
+    }
+
+    @TearDown(Level.Invocation)
+    public void printStages() {
+        if (report != null) {
+            System.out.println(engine + " stages: " + report.getStages());
+            report = null;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * Department resolution: one query for every department code of the census
+     */
+    @Benchmark
+    public List<?> resolveDepartments() {
+        return context.getBean(DepartmentRepository.class).findByCodeIn(codes);
+    }
+
+    /**
+     * Department resolution, persistence of every city of the census and aggregation of the department populations.
+     * The duration of each of these stages is printed after each invocation.
+     */
+    @Benchmark
+    public ImportReport write() {
+        ImportOptions options = new ImportOptions(Integer.MAX_VALUE, chunkSize);
+        options.setEngine(engine);
+        report = new ImportReport();
+        context.getBean(ImportUtils.class).write("benchmark", selection, options, report);
+        return report;
+    }
+
+    /**
+     * Parse every city of the census
+     * @return the cities
+     */
+    private TopCities parse() throws IOException {
+        TopCities cities = new TopCities(Integer.MAX_VALUE);
+        new CensusRowReader(ImportUtils.CENSUS_HEADERS).readAll(new ByteArrayInputStream(census), cities::offer, new ImportReport());
+        return cities;
+    }
+}
@@ -1,16 +1,36 @@
 package fr.diginamic.springdemo;
 
+import fr.diginamic.springdemo.utils.ImportOptions;
 import fr.diginamic.springdemo.utils.ImportUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.DefaultApplicationArguments;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.WebApplicationType;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
+import java.util.stream.Stream;
 
 /**
  * Main class for the TraitementFichier application
+ * This is the batch entry point of the census import, configured with command-line options:
+ * <ul>
+ *     <li>--file=path the CSV file to import (defaults to the bundled recensement.csv)</li>
+ *     <li>--limit=n the number of most populated cities to import (defaults to 1000)</li>
+ *     <li>--chunk-size=n the number of cities written per transaction</li>
+ *     <li>--threads=n the number of parsing threads, at most the number of processors</li>
+ *     <li>--incremental only write new or changed cities, --delete-vanished to also delete the missing ones
+ *     (the limit must then cover every city of the file)</li>
+ *     <li>--resume resume an interrupted import from its last committed chunk</li>
+ *     <li>--engine=jpa|native the engine writing the cities, native being a JDBC bulk load into an empty database
+ *     (it cannot be combined with --incremental, --delete-vanished or --resume)</li>
+ * </ul>
+ * --incremental and --resume keep the database schema between runs instead of recreating it.
  */
 @SpringBootApplication
 public class TraitementFichierApplication implements CommandLineRunner {
@@ -20,23 +40,35 @@ public class TraitementFichierApplication implements CommandLineRunner {
      */
     private static final String CITIES_CSV_PATH = Objects.requireNonNull(TraitementFichierApplication.class.getClassLoader().getResource("recensement.csv")).getPath();
 
-    /**
-     * The headers of the cities CSV file
-     */
-    private static final String[] CITIES_CSV_HEADERS = {"codeRegion", "nameRegion", "codeDepartment", "codeArrondissement", "codeCanton", "codeCommune", "nameCommune", "populationMunicipale", "populationComptéeAPart", "populationTotale"};
-
     /**
      * The ImportUtils
      */
     @Autowired
     private ImportUtils importUtils;
 
+    /**
+     * The default number of cities written per transaction
+     */
+    @Value("${import.chunk-size:1000}")
+    private int defaultChunkSize;
+
+    /**
+     * Whether the census is imported when the application starts
+     */
+    @Value("${import.on-startup:true}")
+    private boolean importOnStartup;
+
     /**
      * Main method
      * @param args the arguments
      */
     public static void main(String[] args) {
         System.out.println("Application started");
+        ApplicationArguments arguments = new DefaultApplicationArguments(args);
+        if (arguments.containsOption("resume") || arguments.containsOption("incremental")) {
+            // Checkpoints and stored cities must survive the restart
+            args = Stream.concat(Arrays.stream(args), Stream.of("--spring.jpa.hibernate.ddl-auto=update")).toArray(String[]::new);
+        }
         SpringApplication app = new SpringApplication(TraitementFichierApplication.class);
         app.setWebApplicationType(WebApplicationType.NONE);
         app.run(args);
@@ -48,6 +80,42 @@ public class TraitementFichierApplication implements CommandLineRunner {
      */
     @Override
     public void run(String... args) {
-        importUtils.mostPopulatedCitiesCSV(CITIES_CSV_PATH, CITIES_CSV_HEADERS, 1000);
+        if (!importOnStartup) {
+            return;
+        }
+        ApplicationArguments arguments = new DefaultApplicationArguments(args);
+        ImportOptions options = new ImportOptions(intOption(arguments, "limit", 1000), intOption(arguments, "chunk-size", defaultChunkSize));
+        int threads = intOption(arguments, "threads", 1);
+        if (threads < 1) {
+            throw new IllegalArgumentException("--threads must be a positive number");
+        }
+        // More parsing threads than processors would only add contention
+        options.setThreads(Math.min(threads, Runtime.getRuntime().availableProcessors()));
+        options.setIncremental(arguments.containsOption("incremental"));
+        options.setDeleteVanished(arguments.containsOption("delete-vanished"));
+        options.setResume(arguments.containsOption("resume"));
+        List<String> engine = arguments.getOptionValues("engine");
+        if (engine != null && !engine.isEmpty()) {
+            options.setEngine(ImportOptions.Engine.valueOf(engine.getFirst().toUpperCase()));
+        }
+        if (options.getEngine() == ImportOptions.Engine.NATIVE && (options.isIncremental() || options.isDeleteVanished() || options.isResume())) {
+            throw new IllegalArgumentException("--engine=native only loads an empty database, it cannot be combined with --incremental, --delete-vanished or --resume");
+        }
+
+        List<String> file = arguments.getOptionValues("file");
+        String path = file == null || file.isEmpty() ? CITIES_CSV_PATH : file.getFirst();
+        importUtils.mostPopulatedCitiesCSV(path, ImportUtils.CENSUS_HEADERS, options);
+    }
+
+    /**
+     * Read an integer option
+     * @param arguments the application arguments
+     * @param name the option name
+     * @param defaultValue the value used when the option is absent
+     * @return the option value
+     */
+    private static int intOption(ApplicationArguments arguments, String name, int defaultValue) {
+        List<String> values = arguments.getOptionValues(name);
+        return values == null || values.isEmpty() ? defaultValue : Integer.parseInt(values.getFirst());
     }
 }
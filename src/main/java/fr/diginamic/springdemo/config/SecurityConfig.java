@@ -32,6 +32,7 @@ public class SecurityConfig {
                                 .requestMatchers("/login","/register","/h2/**").permitAll()
                                 .requestMatchers("/","/logout","/towns","/departments").authenticated()
                                 .requestMatchers("/towns/delete/**","/departments/delete/**").hasRole("ADMIN")
+                                .requestMatchers("/api/imports/**").hasRole("ADMIN")
                                 .anyRequest().denyAll()
                 )
                 .formLogin(formLogin ->
@@ -1,8 +1,13 @@
 package fr.diginamic.springdemo.controllers;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.itextpdf.text.DocumentException;
 import fr.diginamic.springdemo.entities.City;
 import fr.diginamic.springdemo.entities.dtos.CityDTO;
+import fr.diginamic.springdemo.entities.dtos.CursorPage;
 import fr.diginamic.springdemo.exceptions.InvalidException;
 import fr.diginamic.springdemo.exceptions.NotFoundException;
 import fr.diginamic.springdemo.mappers.CityMapper;
@@ -25,11 +30,15 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PagedResourcesAssembler;
 import org.springframework.hateoas.EntityModel;
 import org.springframework.hateoas.PagedModel;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -67,6 +76,12 @@ public class CityController {
     @Autowired
     private PagedResourcesAssembler<CityDTO> cityDTOPagedResourcesAssembler;
 
+    /**
+     * The ObjectMapper, used to write the streamed cities
+     */
+    @Autowired
+    private ObjectMapper objectMapper;
+
     /**
      * Get all cities
      * @return a set of CityDTO
@@ -98,6 +113,50 @@ public class CityController {
         return ResponseEntity.ok(cities);
     }
 
+    /**
+     * Stream all cities
+     * The cities are read from a database cursor and each one is written to the response as soon as it is read,
+     * instead of building the whole list in memory first. An empty table gives an empty array.
+     * @param response the HttpServletResponse
+     * @throws IOException if an I/O error occurs
+     * @see CityService#forEachCity
+     */
+    @Operation(summary = "Stream all cities")
+    @ApiResponses(
+            value = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "List of cities in format JSON, streamed",
+                            content = {@Content(
+                                    mediaType = "application/json",
+                                    schema = @Schema(implementation = CityDTO.class)
+                            )}
+                    )
+            }
+    )
+    @GetMapping("/stream")
+    public void streamCities(HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        // Let the servlet buffer decide when to flush, rather than flushing after every city
+        ObjectWriter writer = objectMapper.writerFor(CityDTO.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(response.getOutputStream())) {
+            generator.writeStartArray();
+            try {
+                cityService.forEachCity(city -> {
+                    try {
+                        writer.writeValue(generator, city);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            generator.writeEndArray();
+        }
+    }
+
     /**
      * Get cities with pagination
      *
@@ -125,6 +184,48 @@ public class CityController {
         return cityDTOPagedResourcesAssembler.toModel(cityRepository.findAll(PageRequest.of(page, size)).map(CityMapper::convertToDTO));
     }
 
+    /**
+     * Get cities with keyset pagination
+     * Pages are chained with the opaque cursor returned with each page, and the total is only counted on demand,
+     * so every page costs the same whatever its depth.
+     * @param sort the sort key: population (descending) or name (ascending)
+     * @param cursor the cursor returned with the previous page, absent for the first page
+     * @param size the page size
+     * @param count whether the total number of cities is returned
+     * @return a page of CityDTO with the cursor of the next page
+     * @throws InvalidException if the sort key or the cursor is invalid
+     * @see CursorPage
+     */
+    @Operation(summary = "Get cities with keyset pagination")
+    @ApiResponses(
+            value = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Page of cities in format JSON, with the cursor of the next page",
+                            content = {@Content(
+                                    mediaType = "application/json",
+                                    schema = @Schema(implementation = CursorPage.class)
+                            )}
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Invalid sort key, page size or cursor",
+                            content = @Content
+                    )
+            }
+    )
+    @GetMapping("/seek")
+    public ResponseEntity<CursorPage<CityDTO>> getCitiesWithKeysetPagination(@RequestParam(defaultValue = "population") String sort,
+                                                                            @RequestParam(required = false) String cursor,
+                                                                            @RequestParam(defaultValue = "20") int size,
+                                                                            @RequestParam(defaultValue = "false") boolean count) throws InvalidException {
+        CursorPage<City> page = cityService.getCitiesPage(sort, cursor, size, count);
+        List<CityDTO> cities = page.content().stream()
+                .map(CityMapper::convertToDTO)
+                .toList();
+        return ResponseEntity.ok(new CursorPage<>(cities, page.nextCursor(), page.total()));
+    }
+
     /**
      * Get a city by its id
      * @param id the city id
@@ -213,11 +314,8 @@ public class CityController {
     )
     @GetMapping("/search/name/start")
     public ResponseEntity<Set<CityDTO>> getCitiesByNameStartingWith(@RequestParam String name) throws NotFoundException {
-        Set<City> cities = cityService.getCitiesByNameStartingWith(name);
-        Set<CityDTO> citiesDTO = cities.stream()
-                .map(CityMapper::convertToDTO)
-                .collect(Collectors.toSet());
-        return ResponseEntity.ok(citiesDTO);
+        Set<CityDTO> cities = cityService.getCitiesByNameStartingWith(name);
+        return ResponseEntity.ok(cities);
     }
 
     /**
@@ -246,11 +344,8 @@ public class CityController {
     )
     @GetMapping("/search/population/greater")
     public ResponseEntity<Set<CityDTO>> getCitiesByPopulationGreaterThan(@RequestParam @Min(0) int population) throws NotFoundException {
-        Set<City> cities = cityService.getCitiesByPopulationGreaterThan(population);
-        Set<CityDTO> citiesDTO = cities.stream()
-                .map(CityMapper::convertToDTO)
-                .collect(Collectors.toSet());
-        return ResponseEntity.ok(citiesDTO);
+        Set<CityDTO> cities = cityService.getCitiesByPopulationGreaterThan(population);
+        return ResponseEntity.ok(cities);
     }
 
     /**
@@ -280,11 +375,8 @@ public class CityController {
     )
     @GetMapping("/search/population/range")
     public ResponseEntity<Set<CityDTO>> getCitiesByPopulationRange(@RequestParam int min, @RequestParam int max) throws NotFoundException {
-        Set<City> cities = cityService.getCitiesByPopulationRange(min, max);
-        Set<CityDTO> citiesDTO = cities.stream()
-                .map(CityMapper::convertToDTO)
-                .collect(Collectors.toSet());
-        return ResponseEntity.ok(citiesDTO);
+        Set<CityDTO> cities = cityService.getCitiesByPopulationRange(min, max);
+        return ResponseEntity.ok(cities);
     }
 
     /**
@@ -316,7 +408,7 @@ public class CityController {
         if (result.hasErrors()) {
             throw new InvalidException(result.getAllErrors().getFirst().getDefaultMessage());
         }
-        City savedCity = cityRepository.save(city);
+        City savedCity = cityService.create(city);
         CityDTO savedCityDTO = CityMapper.convertToDTO(savedCity);
         return ResponseEntity.ok(savedCityDTO);
     }
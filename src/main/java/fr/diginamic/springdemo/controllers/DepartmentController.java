@@ -4,12 +4,12 @@ import com.itextpdf.text.DocumentException;
 import fr.diginamic.springdemo.entities.City;
 import fr.diginamic.springdemo.entities.Department;
 import fr.diginamic.springdemo.entities.dtos.CityDTO;
+import fr.diginamic.springdemo.entities.dtos.CityRank;
+import fr.diginamic.springdemo.entities.dtos.CursorPage;
 import fr.diginamic.springdemo.entities.dtos.DepartmentDTO;
 import fr.diginamic.springdemo.exceptions.InvalidException;
 import fr.diginamic.springdemo.exceptions.NotFoundException;
-import fr.diginamic.springdemo.mappers.CityMapper;
 import fr.diginamic.springdemo.mappers.DepartmentMapper;
-import fr.diginamic.springdemo.repositories.DepartmentRepository;
 import fr.diginamic.springdemo.services.DepartmentService;
 import fr.diginamic.springdemo.utils.ExportsUtils;
 import io.swagger.v3.oas.annotations.Operation;
@@ -31,6 +31,7 @@ import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
 
 import java.io.IOException;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -54,9 +55,6 @@ public class DepartmentController {
     @Autowired
     private DepartmentService departmentService;
 
-    @Autowired
-    private DepartmentRepository departmentRepository;
-
     @Autowired
     private PagedResourcesAssembler<DepartmentDTO> departmentDTOPagedResourcesAssembler;
 
@@ -88,7 +86,7 @@ public class DepartmentController {
     )
     @GetMapping
     public ResponseEntity<Set<DepartmentDTO>> getDepartments() throws NotFoundException {
-        Set<Department> departments = departmentService.getDepartments();
+        Set<Department> departments = departmentService.getDepartmentsWithCities();
         Set<DepartmentDTO> departmentDTOS = departments.stream()
                 .map(DepartmentMapper::convertToDTO)
                 .collect(Collectors.toSet());
@@ -104,7 +102,7 @@ public class DepartmentController {
      * @see PageRequest
      * @see Department
      * @see DepartmentDTO
-     * @see DepartmentRepository
+     * @see DepartmentService
      * @see DepartmentMapper
      */
     @Operation(summary = "Get departments with pagination")
@@ -127,7 +125,47 @@ public class DepartmentController {
     )
     @GetMapping("/pagination")
     public PagedModel<EntityModel<DepartmentDTO>> getDepartmentsPagination(@RequestParam @Min(0) int page, @RequestParam int size) {
-        return departmentDTOPagedResourcesAssembler.toModel(departmentRepository.findAll(PageRequest.of(page, size)).map(DepartmentMapper::convertToDTO));
+        return departmentDTOPagedResourcesAssembler.toModel(departmentService.getDepartmentsWithCities(PageRequest.of(page, size)).map(DepartmentMapper::convertToDTO));
+    }
+
+    /**
+     * Get departments with keyset pagination
+     * Departments are read in code order from the cursor returned with the previous page,
+     * and the total is only counted on demand.
+     * @param cursor the cursor returned with the previous page, absent for the first page
+     * @param size the page size
+     * @param count whether the total number of departments is returned
+     * @return a page of DepartmentDTO with the cursor of the next page
+     * @throws InvalidException if the cursor is invalid
+     * @see CursorPage
+     */
+    @Operation(summary = "Get departments with keyset pagination")
+    @ApiResponses(
+            value = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Page of departments in format JSON, with the cursor of the next page",
+                            content = {@Content(
+                                    mediaType = "application/json",
+                                    schema = @Schema(implementation = CursorPage.class)
+                            )}
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Invalid page size or cursor",
+                            content = @Content
+                    )
+            }
+    )
+    @GetMapping("/seek")
+    public ResponseEntity<CursorPage<DepartmentDTO>> getDepartmentsWithKeysetPagination(@RequestParam(required = false) String cursor,
+                                                                                        @RequestParam(defaultValue = "20") int size,
+                                                                                        @RequestParam(defaultValue = "false") boolean count) throws InvalidException {
+        CursorPage<Department> page = departmentService.getDepartmentsPage(cursor, size, count);
+        List<DepartmentDTO> departments = page.content().stream()
+                .map(DepartmentMapper::convertToDTO)
+                .toList();
+        return ResponseEntity.ok(new CursorPage<>(departments, page.nextCursor(), page.total()));
     }
 
     /**
@@ -254,11 +292,8 @@ public class DepartmentController {
     )
     @GetMapping("/{code}/cities")
     public ResponseEntity<Set<CityDTO>> getCitiesInDepartment(@PathVariable String code) throws NotFoundException {
-        Set<City> cities = departmentService.getCities(code);
-        Set<CityDTO> cityDTOS = cities.stream()
-                .map(CityMapper::convertToDTO)
-                .collect(Collectors.toSet());
-        return ResponseEntity.ok(cityDTOS);
+        Set<CityDTO> cities = departmentService.getCities(code);
+        return ResponseEntity.ok(cities);
     }
 
     /**
@@ -288,11 +323,38 @@ public class DepartmentController {
     )
     @GetMapping("/{code}/cities/mostPopulated")
     public ResponseEntity<Set<CityDTO>> getTopNCitiesInDepartment(@PathVariable String code, @RequestParam int nbCities) throws NotFoundException {
-        List<City> cities = departmentService.getTopNCities(code, nbCities);
-        Set<CityDTO> cityDTOS = cities.stream()
-                .map(CityMapper::convertToDTO)
-                .collect(Collectors.toSet());
-        return ResponseEntity.ok(cityDTOS);
+        List<CityDTO> cities = departmentService.getTopNCities(code, nbCities);
+        return ResponseEntity.ok(new LinkedHashSet<>(cities));
+    }
+
+    /**
+     * Get the rank of a city among the cities of its department, by population
+     * @param code the department code
+     * @param id the city id
+     * @return the rank of the city
+     * @throws NotFoundException if the city is not in the department
+     */
+    @Operation(summary = "Get the rank of a city in its department by population")
+    @ApiResponses(
+            value = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Rank of the city in format JSON",
+                            content = {@Content(
+                                    mediaType = "application/json",
+                                    schema = @Schema(implementation = CityRank.class)
+                            )}
+                    ),
+                    @ApiResponse(
+                            responseCode = "404",
+                            description = "City not found in the department",
+                            content = @Content
+                    )
+            }
+    )
+    @GetMapping("/{code}/cities/{id}/rank")
+    public ResponseEntity<CityRank> getCityRankInDepartment(@PathVariable String code, @PathVariable int id) throws NotFoundException {
+        return ResponseEntity.ok(departmentService.getCityRank(code, id));
     }
 
     /**
@@ -323,11 +385,8 @@ public class DepartmentController {
     )
     @GetMapping("/{code}/cities/search/population/range")
     public ResponseEntity<Set<CityDTO>> getCitiesInDepartmentWithPopulationBetween(@PathVariable String code, @RequestParam int min, @RequestParam int max) throws NotFoundException {
-        Set<City> cities = departmentService.getCitiesWithPopulationRange(code, min, max);
-        Set<CityDTO> cityDTOS = cities.stream()
-                .map(CityMapper::convertToDTO)
-                .collect(Collectors.toSet());
-        return ResponseEntity.ok(cityDTOS);
+        Set<CityDTO> cities = departmentService.getCitiesWithPopulationRange(code, min, max);
+        return ResponseEntity.ok(cities);
     }
 
     /**
@@ -502,7 +561,7 @@ public class DepartmentController {
     )
     @GetMapping("/export/pdf")
     public void exportToPDF(HttpServletResponse response) throws NotFoundException, DocumentException, IOException, IllegalAccessException {
-        Set<DepartmentDTO> departments = departmentService.getDepartments().stream()
+        Set<DepartmentDTO> departments = departmentService.getDepartmentsWithCities().stream()
                 .map(DepartmentMapper::convertToDTO)
                 .collect(Collectors.toSet());
         ExportsUtils.toPDFFile(departments, "departments", response);
@@ -562,8 +621,9 @@ public class DepartmentController {
     )
     @GetMapping("/export/csv")
     public void exportToCSV(HttpServletResponse response) throws NotFoundException, IOException, IllegalAccessException {
+        // The CSV only holds the name and population of the departments, their cities are not needed
         Set<DepartmentDTO> departments = departmentService.getDepartments().stream()
-                .map(DepartmentMapper::convertToDTO)
+                .map(DepartmentMapper::convertToSummaryDTO)
                 .collect(Collectors.toSet());
         ExportsUtils.toCSVFile(departments, "departments", response);
     }
@@ -0,0 +1,190 @@
+package fr.diginamic.springdemo.controllers;
+
+import fr.diginamic.springdemo.entities.dtos.ImportJobDTO;
+import fr.diginamic.springdemo.exceptions.InvalidException;
+import fr.diginamic.springdemo.exceptions.NotFoundException;
+import fr.diginamic.springdemo.services.ImportJobService;
+import fr.diginamic.springdemo.utils.ImportOptions;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+
+/**
+ * A controller for census imports
+ * Uploads are parsed while they are received, then written asynchronously;
+ * their progress is available from the returned job id.
+ * @see ImportJobService
+ *
+ * @author AyoubBenziza
+ */
+@RestController
+@RequestMapping("/api/imports")
+public class ImportController {
+
+    /**
+     * The ImportJobService instance
+     * @see ImportJobService
+     */
+    @Autowired
+    private ImportJobService importJobService;
+
+    /**
+     * The default number of cities written per transaction
+     */
+    @Value("${import.chunk-size:1000}")
+    private int defaultChunkSize;
+
+    /**
+     * Import a census CSV file sent as a multipart upload
+     * @param file the CSV file
+     * @param limit the number of most populated cities to import
+     * @param incremental whether only new or changed cities are written
+     * @param deleteVanished whether an incremental import deletes the missing cities
+     * @return the import job
+     * @throws InvalidException if the file is empty or the limit out of bounds
+     * @throws IOException if the upload cannot be read or is larger than the maximum upload size
+     */
+    @Operation(summary = "Import a census CSV file sent as a multipart upload")
+    @ApiResponses(
+            value = {
+                    @ApiResponse(
+                            responseCode = "202",
+                            description = "Import started, progress in format JSON",
+                            content = {@Content(
+                                    mediaType = "application/json",
+                                    schema = @Schema(implementation = ImportJobDTO.class)
+                            )}
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Invalid file or limit",
+                            content = @Content
+                    ),
+                    @ApiResponse(
+                            responseCode = "413",
+                            description = "File larger than the maximum upload size",
+                            content = @Content
+                    )
+            }
+    )
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<ImportJobDTO> importFile(@RequestParam("file") MultipartFile file,
+                                                   @RequestParam(defaultValue = "${import.upload.max-limit:50000}") int limit,
+                                                   @RequestParam(defaultValue = "false") boolean incremental,
+                                                   @RequestParam(defaultValue = "false") boolean deleteVanished) throws InvalidException, IOException {
+        if (file.isEmpty()) {
+            throw new InvalidException("The file is empty");
+        }
+        try (InputStream in = file.getInputStream()) {
+            return accepted(importJobService.submit(in, options(limit, incremental, deleteVanished)));
+        }
+    }
+
+    /**
+     * Import a census CSV sent as the raw request body.
+     * The body is parsed while it is received, without being buffered in memory or on disk,
+     * and the response is sent once it is read.
+     * @param request the HTTP request
+     * @param limit the number of most populated cities to import
+     * @param incremental whether only new or changed cities are written
+     * @param deleteVanished whether an incremental import deletes the missing cities
+     * @return the import job
+     * @throws InvalidException if the limit is out of bounds
+     * @throws IOException if the body cannot be read or is larger than the maximum upload size
+     */
+    @Operation(summary = "Import a census CSV streamed as the request body")
+    @ApiResponses(
+            value = {
+                    @ApiResponse(
+                            responseCode = "202",
+                            description = "Import started, progress in format JSON",
+                            content = {@Content(
+                                    mediaType = "application/json",
+                                    schema = @Schema(implementation = ImportJobDTO.class)
+                            )}
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Invalid limit",
+                            content = @Content
+                    ),
+                    @ApiResponse(
+                            responseCode = "413",
+                            description = "Body larger than the maximum upload size",
+                            content = @Content
+                    )
+            }
+    )
+    @PostMapping(consumes = {"text/csv", MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    public ResponseEntity<ImportJobDTO> importStream(HttpServletRequest request,
+                                                     @RequestParam(defaultValue = "${import.upload.max-limit:50000}") int limit,
+                                                     @RequestParam(defaultValue = "false") boolean incremental,
+                                                     @RequestParam(defaultValue = "false") boolean deleteVanished) throws InvalidException, IOException {
+        return accepted(importJobService.submit(request.getInputStream(), options(limit, incremental, deleteVanished)));
+    }
+
+    /**
+     * Get the progress of an import
+     * @param id the import job id
+     * @return the import job
+     * @throws NotFoundException if the import is not found
+     */
+    @Operation(summary = "Get the progress of an import")
+    @ApiResponses(
+            value = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Import progress in format JSON",
+                            content = {@Content(
+                                    mediaType = "application/json",
+                                    schema = @Schema(implementation = ImportJobDTO.class)
+                            )}
+                    ),
+                    @ApiResponse(
+                            responseCode = "404",
+                            description = "Import not found",
+                            content = @Content
+                    )
+            }
+    )
+    @GetMapping("/{id}")
+    public ResponseEntity<ImportJobDTO> getImport(@PathVariable long id) throws NotFoundException {
+        return ResponseEntity.ok(importJobService.getJob(id));
+    }
+
+    /**
+     * Build the options of an uploaded import
+     * @param limit the number of most populated cities to import
+     * @param incremental whether only new or changed cities are written
+     * @param deleteVanished whether an incremental import deletes the missing cities
+     * @return the import options
+     */
+    private ImportOptions options(int limit, boolean incremental, boolean deleteVanished) {
+        ImportOptions options = new ImportOptions(limit, defaultChunkSize);
+        options.setIncremental(incremental);
+        options.setDeleteVanished(deleteVanished);
+        return options;
+    }
+
+    /**
+     * Build the response of a started import
+     * @param job the import job
+     * @return a 202 response pointing to the job progress
+     */
+    private static ResponseEntity<ImportJobDTO> accepted(ImportJobDTO job) {
+        return ResponseEntity.accepted().location(URI.create("/api/imports/" + job.id())).body(job);
+    }
+}
@@ -0,0 +1,108 @@
+package fr.diginamic.springdemo.controllers;
+
+import fr.diginamic.springdemo.entities.dtos.CityMatch;
+import fr.diginamic.springdemo.entities.dtos.Suggestion;
+import fr.diginamic.springdemo.exceptions.InvalidException;
+import fr.diginamic.springdemo.services.AutocompleteService;
+import fr.diginamic.springdemo.services.FuzzySearchService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/**
+ * A controller for the searches over city and department names, served from in-memory indexes
+ * @see AutocompleteService
+ * @see FuzzySearchService
+ *
+ * @author AyoubBenziza
+ */
+@RestController
+@RequestMapping("/api/search")
+public class SearchController {
+
+    /**
+     * The AutocompleteService instance
+     * @see AutocompleteService
+     */
+    @Autowired
+    private AutocompleteService autocompleteService;
+
+    /**
+     * The FuzzySearchService instance
+     * @see FuzzySearchService
+     */
+    @Autowired
+    private FuzzySearchService fuzzySearchService;
+
+    /**
+     * Autocomplete a city or department name
+     * @param q the beginning of a word of the name, case, accents and punctuation ignored
+     * @param limit the maximum number of results
+     * @return the cities and departments matching, most populated first
+     * @throws InvalidException if the search is empty or the limit out of bounds
+     */
+    @Operation(summary = "Autocomplete a city or department name")
+    @ApiResponses(
+            value = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Cities and departments in format JSON, most populated first",
+                            content = {@Content(
+                                    mediaType = "application/json",
+                                    schema = @Schema(implementation = Suggestion.class)
+                            )}
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Empty search or invalid limit",
+                            content = @Content
+                    )
+            }
+    )
+    @GetMapping("/autocomplete")
+    public ResponseEntity<List<Suggestion>> autocomplete(@RequestParam String q,
+                                                         @RequestParam(defaultValue = "10") int limit) throws InvalidException {
+        return ResponseEntity.ok(autocompleteService.autocomplete(q, limit));
+    }
+
+    /**
+     * Search cities by name, tolerating typos, abbreviations ("St", "Ste"), accents and punctuation
+     * @param q the name searched
+     * @param limit the maximum number of results
+     * @return the cities, best match first, the most populated first on ties
+     * @throws InvalidException if the search is empty or the limit out of bounds
+     */
+    @Operation(summary = "Search cities by name, tolerating typos")
+    @ApiResponses(
+            value = {
+                    @ApiResponse(
+                            responseCode = "200",
+                            description = "Cities with their score in format JSON, best match first",
+                            content = {@Content(
+                                    mediaType = "application/json",
+                                    schema = @Schema(implementation = CityMatch.class)
+                            )}
+                    ),
+                    @ApiResponse(
+                            responseCode = "400",
+                            description = "Empty search or invalid limit",
+                            content = @Content
+                    )
+            }
+    )
+    @GetMapping("/fuzzy")
+    public ResponseEntity<List<CityMatch>> fuzzy(@RequestParam String q,
+                                                 @RequestParam(defaultValue = "10") int limit) throws InvalidException {
+        return ResponseEntity.ok(fuzzySearchService.search(q, limit));
+    }
+}
@@ -1,5 +1,6 @@
 package fr.diginamic.springdemo.entities;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
@@ -7,17 +8,34 @@ import jakarta.validation.constraints.Size;
 
 /**
  * A City entity
+ * The indexes of the table back the queries of the CityRepository, CityRepositoryIndexTest checks they are used.
  * @see Department
  * @author AyoubBenziza
  */
 @Entity
-@Table(name = "cities")
+@Table(name = "cities",
+        uniqueConstraints = @UniqueConstraint(name = "uk_cities_department_commune", columnNames = {"department_code", "commune_code"}),
+        indexes = {
+                // Name lookups and prefix searches, and the keyset listing by name
+                @Index(name = "idx_cities_name_id", columnList = "name, id"),
+                // Population ranges, and the keyset listing by population
+                @Index(name = "idx_cities_population_id", columnList = "population DESC, id DESC"),
+                // Cities of a department, by population range or in population order
+                @Index(name = "idx_cities_department_population", columnList = "department_code, population DESC")
+        })
 public class City {
+    /**
+     * The number of ids reserved by each call to the cities_seq sequence
+     */
+    public static final int ID_ALLOCATION_SIZE = 50;
+
     /**
      * The city id
+     * A pooled sequence is used instead of an identity column so that Hibernate can batch inserts
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "cities_seq")
+    @SequenceGenerator(name = "cities_seq", sequenceName = "cities_seq", allocationSize = City.ID_ALLOCATION_SIZE)
     private int id;
 
     /**
@@ -43,6 +61,19 @@ public class City {
     @JoinColumn(name = "department_code")
     private Department department;
 
+    /**
+     * The INSEE commune code, unique within the department
+     */
+    @Column(name = "commune_code", length = 5)
+    private String communeCode;
+
+    /**
+     * A hash of the imported content of the city, used to detect changes between two census imports
+     */
+    @JsonIgnore
+    @Column(name = "content_hash")
+    private long contentHash;
+
     /**
      * Constructor
      * @param name the city name
@@ -114,6 +145,38 @@ public class City {
         this.department = department;
     }
 
+    /**
+     * Get the city commune code
+     * @return a string
+     */
+    public String getCommuneCode() {
+        return communeCode;
+    }
+
+    /**
+     * Set the city commune code
+     * @param communeCode the city commune code
+     */
+    public void setCommuneCode(String communeCode) {
+        this.communeCode = communeCode;
+    }
+
+    /**
+     * Get the hash of the imported content of the city
+     * @return a long
+     */
+    public long getContentHash() {
+        return contentHash;
+    }
+
+    /**
+     * Set the hash of the imported content of the city
+     * @param contentHash the content hash
+     */
+    public void setContentHash(long contentHash) {
+        this.contentHash = contentHash;
+    }
+
     /**
      * Check if two cities are equal
      * @param obj the object to compare
@@ -1,8 +1,10 @@
 package fr.diginamic.springdemo.entities;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.util.HashSet;
 import java.util.Set;
@@ -31,6 +33,16 @@ public class Department {
     @Size(min = 2, max = 100)
     private String name;
 
+    /**
+     * The department population (sum of all cities' populations)
+     * It is stored rather than summed over the cities, and maintained as cities are written.
+     * @see fr.diginamic.springdemo.services.DepartmentPopulationListener
+     */
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private int population;
+
     /**
      * The department cities
      */
@@ -88,7 +100,15 @@ public class Department {
      * @return an integer
      */
     public int getPopulation() {
-        return cities.stream().mapToInt(City::getPopulation).sum();
+        return population;
+    }
+
+    /**
+     * Set the department population
+     * @param population the department population
+     */
+    public void setPopulation(int population) {
+        this.population = population;
     }
 
     /**
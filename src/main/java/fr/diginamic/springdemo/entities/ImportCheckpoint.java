@@ -0,0 +1,82 @@
+package fr.diginamic.springdemo.entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import java.time.LocalDateTime;
+
+/**
+ * The progress of a census import, committed with each chunk so that a crashed import can resume
+ * @see fr.diginamic.springdemo.utils.ImportUtils
+ * @author AyoubBenziza
+ */
+@Entity
+@Table(name = "import_checkpoint")
+public class ImportCheckpoint {
+    /**
+     * The import job key
+     */
+    @Id
+    private String job;
+
+    /**
+     * The number of cities committed so far, i.e. the offset of the next chunk
+     */
+    @Column(name = "committed_rows")
+    private int committedRows;
+
+    /**
+     * The date of the last committed chunk
+     */
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    /**
+     * Constructor
+     * @param job the import job key
+     */
+    public ImportCheckpoint(String job) {
+        this.job = job;
+    }
+
+    /**
+     * Default constructor
+     */
+    public ImportCheckpoint() {
+    }
+
+    /**
+     * Get the import job key
+     * @return a string
+     */
+    public String getJob() {
+        return job;
+    }
+
+    /**
+     * Get the number of committed cities
+     * @return an integer
+     */
+    public int getCommittedRows() {
+        return committedRows;
+    }
+
+    /**
+     * Set the number of committed cities
+     * @param committedRows the number of committed cities
+     */
+    public void setCommittedRows(int committedRows) {
+        this.committedRows = committedRows;
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    /**
+     * Get the date of the last committed chunk
+     * @return a LocalDateTime
+     */
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+}
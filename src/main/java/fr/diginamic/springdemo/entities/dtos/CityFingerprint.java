@@ -0,0 +1,21 @@
+package fr.diginamic.springdemo.entities.dtos;
+
+/**
+ * The natural key and content hash of a stored city, used by incremental imports
+ * @param id the city id
+ * @param departmentCode the department code
+ * @param communeCode the commune code
+ * @param contentHash the content hash
+ * @see fr.diginamic.springdemo.entities.City
+ * @author AyoubBenziza
+ */
+public record CityFingerprint(int id, String departmentCode, String communeCode, long contentHash) {
+
+    /**
+     * Get the natural key of the city
+     * @return a string made of the department code and the commune code
+     */
+    public String key() {
+        return departmentCode + ":" + communeCode;
+    }
+}
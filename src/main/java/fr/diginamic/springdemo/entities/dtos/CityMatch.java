@@ -0,0 +1,14 @@
+package fr.diginamic.springdemo.entities.dtos;
+
+/**
+ * A city found by a fuzzy search
+ * @param id the city id
+ * @param name the city name
+ * @param departmentCode the department code, "N/A" for a city without department
+ * @param population the city population
+ * @param score the similarity between the search and the city name, from 0 to 1
+ * @see fr.diginamic.springdemo.utils.TrigramIndex
+ * @author AyoubBenziza
+ */
+public record CityMatch(int id, String name, String departmentCode, int population, double score) {
+}
@@ -0,0 +1,15 @@
+package fr.diginamic.springdemo.entities.dtos;
+
+/**
+ * The rank of a city among the cities of its department, by population
+ * @param id the city id
+ * @param name the city name
+ * @param departmentCode the department code
+ * @param population the city population
+ * @param rank the rank of the city, 1 for the most populated; cities with the same population share the same rank
+ * @param cities the number of cities in the department
+ * @see fr.diginamic.springdemo.utils.DepartmentRankings
+ * @author AyoubBenziza
+ */
+public record CityRank(int id, String name, String departmentCode, int population, int rank, int cities) {
+}
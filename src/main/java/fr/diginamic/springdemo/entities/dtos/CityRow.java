@@ -0,0 +1,21 @@
+package fr.diginamic.springdemo.entities.dtos;
+
+/**
+ * A flat, read-only row of the cities table, used to build in-memory indexes
+ * @param id the city id
+ * @param name the city name
+ * @param population the city population
+ * @param departmentCode the city department code, "N/A" if the city has no department
+ * @see fr.diginamic.springdemo.utils.CitySnapshot
+ * @author AyoubBenziza
+ */
+public record CityRow(int id, String name, int population, String departmentCode) {
+
+    /**
+     * Convert the row to a CityDTO
+     * @return the CityDTO
+     */
+    public CityDTO toDTO() {
+        return new CityDTO(name, population, departmentCode);
+    }
+}
@@ -0,0 +1,18 @@
+package fr.diginamic.springdemo.entities.dtos;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * A page of a keyset (seek) paginated listing
+ * @param content the items of the page
+ * @param nextCursor the opaque cursor of the next page, or null on the last page
+ * @param total the total number of items, only counted when the client asks for it
+ * @param <T> the type of the items
+ * @see fr.diginamic.springdemo.utils.KeysetCursor
+ * @author AyoubBenziza
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record CursorPage<T>(List<T> content, String nextCursor, Long total) {
+}
@@ -0,0 +1,32 @@
+package fr.diginamic.springdemo.entities.dtos;
+
+import fr.diginamic.springdemo.utils.ImportReport;
+
+/**
+ * A DTO for the progress of an asynchronous census import
+ * @param id the import job id
+ * @param status the state of the import
+ * @param parsed the number of rows parsed
+ * @param rejected the number of rows rejected by the parser
+ * @param written the number of cities written
+ * @param updated the number of cities updated
+ * @param deleted the number of cities deleted
+ * @param elapsedMillis the elapsed time of the import, in milliseconds
+ * @param rowsPerSecond the write throughput
+ * @param error the error message of a failed import
+ * @see ImportReport
+ * @author AyoubBenziza
+ */
+public record ImportJobDTO(long id, ImportReport.Status status, long parsed, long rejected, long written, long updated,
+                           long deleted, long elapsedMillis, double rowsPerSecond, String error) {
+
+    /**
+     * Constructor
+     * @param id the import job id
+     * @param report the import report
+     */
+    public ImportJobDTO(long id, ImportReport report) {
+        this(id, report.getStatus(), report.getParsed(), report.getRejected(), report.getWritten(), report.getUpdated(),
+                report.getDeleted(), report.getElapsed().toMillis(), report.getRowsPerSecond(), report.getError());
+    }
+}
@@ -0,0 +1,65 @@
+package fr.diginamic.springdemo.entities.dtos;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * A search result: a city or a department
+ * @param type the type of the result, {@link #CITY} or {@link #DEPARTMENT}
+ * @param id the city id, null for a department
+ * @param name the city or department name
+ * @param departmentCode the department code, "N/A" for a city without department
+ * @param population the population
+ * @see fr.diginamic.springdemo.utils.PrefixIndex
+ * @author AyoubBenziza
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record Suggestion(String type, Integer id, String name, String departmentCode, int population) {
+
+    /**
+     * The type of a city result
+     */
+    public static final String CITY = "city";
+
+    /**
+     * The type of a department result
+     */
+    public static final String DEPARTMENT = "department";
+
+    /**
+     * Create a city result
+     * @param row the city
+     * @return the result
+     */
+    public static Suggestion city(CityRow row) {
+        return new Suggestion(CITY, row.id(), row.name(), row.departmentCode(), row.population());
+    }
+
+    /**
+     * Create a department result
+     * @param code the department code
+     * @param name the department name
+     * @param population the department population
+     * @return the result
+     */
+    public static Suggestion department(String code, String name, int population) {
+        return new Suggestion(DEPARTMENT, null, name, code, population);
+    }
+
+    /**
+     * Check if the result is a given city
+     * @param cityId the city id
+     * @return a boolean
+     */
+    public boolean isCity(int cityId) {
+        return CITY.equals(type) && id != null && id == cityId;
+    }
+
+    /**
+     * Check if the result is a given department
+     * @param code the department code
+     * @return a boolean
+     */
+    public boolean isDepartment(String code) {
+        return DEPARTMENT.equals(type) && departmentCode.equals(code);
+    }
+}
@@ -0,0 +1,10 @@
+package fr.diginamic.springdemo.events;
+
+/**
+ * Event published after a bulk write of cities (an import, or a change to a whole department),
+ * when listeners should reload their view of the cities rather than apply a single change.
+ * @param source a short description of the write
+ * @see CityWriteEvent
+ */
+public record CitiesReloadedEvent(String source) {
+}
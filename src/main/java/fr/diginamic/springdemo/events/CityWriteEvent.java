@@ -0,0 +1,55 @@
+package fr.diginamic.springdemo.events;
+
+import fr.diginamic.springdemo.entities.City;
+
+/**
+ * Event published when a city is created, updated or deleted through the CityService.
+ * It carries the department and population of the city before and after the write,
+ * so that listeners can apply the change incrementally.
+ * @param cityId the city id
+ * @param previousDepartmentCode the department code before the write, or null for a creation
+ * @param previousPopulation the population before the write, 0 for a creation
+ * @param departmentCode the department code after the write, or null for a deletion
+ * @param population the population after the write, 0 for a deletion
+ * @see fr.diginamic.springdemo.services.CityService
+ */
+public record CityWriteEvent(int cityId, String previousDepartmentCode, int previousPopulation, String departmentCode, int population) {
+
+    /**
+     * Create the event of a city creation
+     * @param city the created city
+     * @return the event
+     */
+    public static CityWriteEvent created(City city) {
+        return new CityWriteEvent(city.getId(), null, 0, departmentCode(city), city.getPopulation());
+    }
+
+    /**
+     * Create the event of a city update
+     * @param city the updated city
+     * @param previousDepartmentCode the department code before the update
+     * @param previousPopulation the population before the update
+     * @return the event
+     */
+    public static CityWriteEvent updated(City city, String previousDepartmentCode, int previousPopulation) {
+        return new CityWriteEvent(city.getId(), previousDepartmentCode, previousPopulation, departmentCode(city), city.getPopulation());
+    }
+
+    /**
+     * Create the event of a city deletion
+     * @param city the deleted city
+     * @return the event
+     */
+    public static CityWriteEvent deleted(City city) {
+        return new CityWriteEvent(city.getId(), departmentCode(city), city.getPopulation(), null, 0);
+    }
+
+    /**
+     * Get the department code of a city
+     * @param city the city
+     * @return the department code, or null if the city has no department
+     */
+    public static String departmentCode(City city) {
+        return city.getDepartment() != null ? city.getDepartment().getCode() : null;
+    }
+}
@@ -0,0 +1,9 @@
+package fr.diginamic.springdemo.events;
+
+/**
+ * Event published when departments are created or renamed without any change to their cities
+ * @param source a short description of the write
+ * @see CitiesReloadedEvent
+ */
+public record DepartmentsChangedEvent(String source) {
+}
@@ -0,0 +1,11 @@
+package fr.diginamic.springdemo.exceptions;
+
+/**
+ * Thrown when a call is refused because the circuit breaker of its remote is open
+ * @see fr.diginamic.springdemo.utils.CircuitBreaker
+ */
+public class CircuitOpenException extends RuntimeException {
+    public CircuitOpenException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,13 @@
+package fr.diginamic.springdemo.exceptions;
+
+import java.io.IOException;
+
+/**
+ * Thrown while reading an upload larger than the accepted size
+ * @see fr.diginamic.springdemo.utils.LimitedInputStream
+ */
+public class PayloadTooLargeException extends IOException {
+    public PayloadTooLargeException(String message) {
+        super(message);
+    }
+}
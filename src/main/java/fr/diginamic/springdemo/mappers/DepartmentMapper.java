@@ -15,19 +15,33 @@ import java.util.stream.Collectors;
 public class DepartmentMapper {
     /**
      * Convert a Department to a DepartmentDTO
+     * The cities are read from the department, which should have them fetched beforehand to avoid one query per department.
      * @param department the department
      * @return the DepartmentDTO
      */
     public static DepartmentDTO convertToDTO(Department department) {
         if (department != null) {
-            DepartmentDTO departmentDTO = new DepartmentDTO(department.getPopulation());
-            departmentDTO.setName(department.getName());
+            DepartmentDTO departmentDTO = convertToSummaryDTO(department);
             Set<CityDTO> cityDTOs = department.getCities().stream()
-                    .map(city -> new CityDTO(city.getName(), city.getPopulation(), city.getDepartment().getCode()))
+                    .map(city -> new CityDTO(city.getName(), city.getPopulation(), department.getCode()))
                     .collect(Collectors.toSet());
             departmentDTO.setCities(cityDTOs);
             return departmentDTO;
         }
         return null;
     }
+
+    /**
+     * Convert a Department to a DepartmentDTO without its cities
+     * @param department the department
+     * @return the DepartmentDTO
+     */
+    public static DepartmentDTO convertToSummaryDTO(Department department) {
+        if (department != null) {
+            DepartmentDTO departmentDTO = new DepartmentDTO(department.getPopulation());
+            departmentDTO.setName(department.getName());
+            return departmentDTO;
+        }
+        return null;
+    }
 }
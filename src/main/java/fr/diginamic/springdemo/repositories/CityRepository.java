@@ -1,18 +1,47 @@
 package fr.diginamic.springdemo.repositories;
 
 import fr.diginamic.springdemo.entities.City;
+import fr.diginamic.springdemo.entities.dtos.CityDTO;
+import fr.diginamic.springdemo.entities.dtos.CityFingerprint;
+import fr.diginamic.springdemo.entities.dtos.CityRow;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.jpa.repository.query.EscapeCharacter;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Stream;
 
 /**
  * Repository for the City entity
  */
 @Repository
 public interface CityRepository extends JpaRepository<City, Integer> {
+
+    /**
+     * Projection of the cities into CityDTO, selecting only the name, population and department code.
+     * No entity is created, so nothing is dirty-checked, proxied or kept in the persistence context.
+     */
+    String CITY_DTO = "select new fr.diginamic.springdemo.entities.dtos.CityDTO(c.name, c.population, coalesce(d.code, 'N/A')) from City c left join c.department d";
+
+    /**
+     * The escape character of the LIKE patterns.
+     * '!' rather than a backslash, which HQL string literals would read as an escape of their own.
+     */
+    EscapeCharacter LIKE_ESCAPE = EscapeCharacter.of('!');
+
+    /**
+     * Projection of the cities into CityRow, the CityDTO columns plus the city id
+     */
+    String CITY_ROW = "select new fr.diginamic.springdemo.entities.dtos.CityRow(c.id, c.name, c.population, coalesce(d.code, 'N/A')) from City c left join c.department d";
+
     /**
      * Find a city by its name
      * @param name the name of the city
@@ -59,4 +88,129 @@ public interface CityRepository extends JpaRepository<City, Integer> {
     Set<City> findCitiesByPopulationBetweenAndDepartment_Code(int minPopulation, int maxPopulation, String departmentCode);
 
     Page<City> findAllByDepartment_CodeOrderByPopulationDesc(String departmentCode, Pageable pageable);
+
+    /**
+     * Find the natural key and content hash of every imported city
+     * @return the fingerprints of the cities having a commune code
+     */
+    @Query("select new fr.diginamic.springdemo.entities.dtos.CityFingerprint(c.id, c.department.code, c.communeCode, c.contentHash) from City c where c.communeCode is not null")
+    List<CityFingerprint> findAllFingerprints();
+
+    /**
+     * Find the first cities by population in descending order (keyset pagination)
+     * @param pageable the page size, no count query is run
+     * @return the cities
+     */
+    @Query("select c from City c left join fetch c.department order by c.population desc, c.id desc")
+    List<City> findFirstByPopulation(Pageable pageable);
+
+    /**
+     * Find the cities following a given one by population in descending order (keyset pagination)
+     * The condition seeks on the (population, id) index instead of skipping the previous pages.
+     * @param population the population of the last city read
+     * @param id the id of the last city read
+     * @param pageable the page size, no count query is run
+     * @return the cities
+     */
+    @Query("select c from City c left join fetch c.department where c.population <= :population and (c.population < :population or c.id < :id) order by c.population desc, c.id desc")
+    List<City> findNextByPopulation(int population, int id, Pageable pageable);
+
+    /**
+     * Find the first cities by name (keyset pagination)
+     * @param pageable the page size, no count query is run
+     * @return the cities
+     */
+    @Query("select c from City c left join fetch c.department order by c.name, c.id")
+    List<City> findFirstByName(Pageable pageable);
+
+    /**
+     * Find the cities following a given one by name (keyset pagination)
+     * The condition seeks on the (name, id) index instead of skipping the previous pages.
+     * @param name the name of the last city read
+     * @param id the id of the last city read
+     * @param pageable the page size, no count query is run
+     * @return the cities
+     */
+    @Query("select c from City c left join fetch c.department where c.name >= :name and (c.name > :name or c.id > :id) order by c.name, c.id")
+    List<City> findNextByName(String name, int id, Pageable pageable);
+
+    /**
+     * Find cities by their name starting with a given string, as DTOs
+     * The wildcards of the string (%, _) are escaped, so they only match themselves.
+     * @param prefix the string to search for
+     * @return the cities
+     */
+    default List<CityDTO> findDTOsByNameStartingWith(String prefix) {
+        return findDTOsByNameLike(LIKE_ESCAPE.escape(prefix) + "%");
+    }
+
+    /**
+     * Find cities by their name matching a LIKE pattern, as DTOs
+     * @param pattern the pattern, escaped with {@link #LIKE_ESCAPE}
+     * @return the cities
+     */
+    @Query(CITY_DTO + " where c.name like :pattern escape '!'")
+    List<CityDTO> findDTOsByNameLike(String pattern);
+
+    /**
+     * Find cities with a population greater than a given one, as DTOs
+     * @param population the population
+     * @return the cities
+     */
+    @Query(CITY_DTO + " where c.population > :population")
+    List<CityDTO> findDTOsByPopulationGreaterThan(int population);
+
+    /**
+     * Find cities by range of population, as DTOs
+     * @param min the minimum population
+     * @param max the maximum population
+     * @return the cities
+     */
+    @Query(CITY_DTO + " where c.population between :min and :max")
+    List<CityDTO> findDTOsByPopulationBetween(int min, int max);
+
+    /**
+     * Find the cities in a department, as DTOs
+     * The condition is on the foreign key of the cities (c.department.code needs no join), so it seeks on its index
+     * rather than filtering the outer join.
+     * @param departmentCode the code of the department
+     * @return the cities
+     */
+    @Query(CITY_DTO + " where c.department.code = :departmentCode")
+    List<CityDTO> findDTOsByDepartmentCode(String departmentCode);
+
+    /**
+     * Find the cities in a department by range of population, as DTOs
+     * @param departmentCode the code of the department
+     * @param min the minimum population
+     * @param max the maximum population
+     * @return the cities
+     */
+    @Query(CITY_DTO + " where c.department.code = :departmentCode and c.population between :min and :max")
+    List<CityDTO> findDTOsByDepartmentCodeAndPopulationBetween(String departmentCode, int min, int max);
+
+    /**
+     * Stream every city as a DTO from a database cursor
+     * Rows are fetched by batches of 500; the stream must be consumed and closed within a transaction.
+     * @return a stream of cities
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query(CITY_DTO)
+    Stream<CityDTO> streamAllDTOs();
+
+    /**
+     * Find every city as a row, to build in-memory indexes
+     * @return the city rows
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query(CITY_ROW)
+    List<CityRow> findAllRows();
+
+    /**
+     * Find a city as a row
+     * @param id the city id
+     * @return the city row
+     */
+    @Query(CITY_ROW + " where c.id = :id")
+    Optional<CityRow> findRowById(int id);
 }
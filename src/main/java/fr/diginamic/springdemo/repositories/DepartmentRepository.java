@@ -1,9 +1,16 @@
 package fr.diginamic.springdemo.repositories;
 
 import fr.diginamic.springdemo.entities.Department;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -18,6 +25,48 @@ public interface DepartmentRepository extends JpaRepository<Department, Integer>
      */
     Department findByCode(String code);
 
+    /**
+     * Find the departments matching a set of codes
+     * @param codes the codes of the departments
+     * @return the departments found
+     */
+    List<Department> findByCodeIn(Collection<String> codes);
+
+    /**
+     * Find all departments with their cities, in a single join-fetch query
+     * @return the departments, their cities initialized
+     */
+    @EntityGraph(attributePaths = "cities")
+    @Query("select d from Department d")
+    List<Department> findAllWithCities();
+
+    /**
+     * Find the departments matching a set of codes with their cities, in a single join-fetch query
+     * @param codes the codes of the departments
+     * @return the departments found, their cities initialized
+     */
+    @EntityGraph(attributePaths = "cities")
+    List<Department> findWithCitiesByCodeIn(Collection<String> codes);
+
+    /**
+     * Find a page of department codes
+     * Collections cannot be join-fetched in a paginated query, so a page is read as codes first
+     * then fetched with {@link #findWithCitiesByCodeIn(Collection)}.
+     * @param pageable the page request
+     * @return a page of codes
+     */
+    @Query("select d.code from Department d")
+    Page<String> findAllCodes(Pageable pageable);
+
+    /**
+     * Find the codes following a given one (keyset pagination on the primary key)
+     * @param after the last code read, empty for the first page
+     * @param pageable the page size, no count query is run
+     * @return the codes, in ascending order
+     */
+    @Query("select d.code from Department d where d.code > :after order by d.code")
+    List<String> findCodesAfter(String after, Pageable pageable);
+
     /**
      * Check if a department exists by its code
      * @param code the code of the department
@@ -35,10 +84,31 @@ public interface DepartmentRepository extends JpaRepository<Department, Integer>
     /**
      * Find departments by their name starting with a given string
      * @param name the string to search for
-     * @return the departments
+     * @return the departments, their cities initialized
      */
+    @EntityGraph(attributePaths = "cities")
     Set<Department> findByNameStartingWith(String name);
 
+    /**
+     * Add a delta to the stored population of a department.
+     * The persistence context is cleared afterwards, so that the department is not read with its former population.
+     * @param code the code of the department
+     * @param delta the population change, negative for a decrease
+     * @return the number of updated departments
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Department d set d.population = d.population + :delta where d.code = :code")
+    int addPopulation(String code, int delta);
+
+    /**
+     * Recompute the stored population of every department from its cities, in a single statement.
+     * The persistence context is cleared afterwards, so that departments loaded again see their new population.
+     * @return the number of updated departments
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "update department d set population = coalesce((select sum(c.population) from cities c where c.department_code = d.code), 0)", nativeQuery = true)
+    int refreshPopulations();
+
     /**
      * Delete a department by its code
      * @param code the code of the department
@@ -0,0 +1,12 @@
+package fr.diginamic.springdemo.repositories;
+
+import fr.diginamic.springdemo.entities.ImportCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repository for the ImportCheckpoint entity
+ */
+@Repository
+public interface ImportCheckpointRepository extends JpaRepository<ImportCheckpoint, String> {
+}
@@ -0,0 +1,133 @@
+package fr.diginamic.springdemo.services;
+
+import fr.diginamic.springdemo.entities.dtos.CityRow;
+import fr.diginamic.springdemo.entities.dtos.Suggestion;
+import fr.diginamic.springdemo.events.CityWriteEvent;
+import fr.diginamic.springdemo.exceptions.InvalidException;
+import fr.diginamic.springdemo.repositories.DepartmentRepository;
+import fr.diginamic.springdemo.utils.PrefixIndex;
+import fr.diginamic.springdemo.utils.TextNormalizer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Autocompletion of the city and department names, served from an in-memory {@link PrefixIndex}.
+ * The index is fed by the {@link CityIndexLoader}, the departments being reloaded when they change.
+ * @see fr.diginamic.springdemo.controllers.SearchController
+ */
+@Service
+public class AutocompleteService implements CityIndex {
+
+    /**
+     * The maximum number of results of a search
+     */
+    public static final int MAX_LIMIT = 100;
+
+    /**
+     * The CityIndexLoader, used to build the index if a search comes before it is built
+     */
+    @Autowired
+    private ObjectProvider<CityIndexLoader> cityIndexLoader;
+
+    /**
+     * The DepartmentRepository
+     */
+    @Autowired
+    private DepartmentRepository departmentRepository;
+
+    /**
+     * The current index, null until the first build
+     */
+    private volatile PrefixIndex index;
+
+    /**
+     * Get the most populated cities and departments whose name has a word starting with a prefix.
+     * The search ignores case, accents and punctuation.
+     * @param prefix the prefix
+     * @param limit the maximum number of results
+     * @return the results, most populated first
+     * @throws InvalidException if the prefix has no letter or digit, or if the limit is out of bounds
+     */
+    public List<Suggestion> autocomplete(String prefix, int limit) throws InvalidException {
+        if (TextNormalizer.normalize(prefix).isEmpty()) {
+            throw new InvalidException("The search must contain at least one letter or digit");
+        }
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new InvalidException("The limit must be between 1 and " + MAX_LIMIT);
+        }
+        if (index == null) {
+            cityIndexLoader.getObject().load();
+        }
+        return index.search(prefix, limit);
+    }
+
+    @Override
+    public synchronized void rebuild(List<CityRow> rows) {
+        List<Suggestion> suggestions = new ArrayList<>(rows.size());
+        rows.forEach(row -> suggestions.add(Suggestion.city(row)));
+        suggestions.addAll(loadDepartments());
+        index = PrefixIndex.of(suggestions);
+    }
+
+    /**
+     * {@inheritDoc}
+     * The city keys are replaced, and the population change is applied to its department(s).
+     */
+    @Override
+    public synchronized void update(CityWriteEvent event, CityRow row) {
+        PrefixIndex current = index;
+        if (current == null) {
+            return;
+        }
+        current = current.without(suggestion -> suggestion.isCity(event.cityId()));
+        if (row != null) {
+            current = current.with(List.of(Suggestion.city(row)));
+        }
+        if (Objects.equals(event.previousDepartmentCode(), event.departmentCode())) {
+            current = addPopulation(current, event.departmentCode(), event.population() - event.previousPopulation());
+        } else {
+            current = addPopulation(current, event.previousDepartmentCode(), -event.previousPopulation());
+            current = addPopulation(current, event.departmentCode(), event.population());
+        }
+        index = current;
+    }
+
+    @Override
+    public synchronized void refreshDepartments() {
+        PrefixIndex current = index;
+        if (current == null) {
+            return;
+        }
+        index = current.without(suggestion -> Suggestion.DEPARTMENT.equals(suggestion.type())).with(loadDepartments());
+    }
+
+    /**
+     * Load the departments as results
+     * @return the departments
+     */
+    private List<Suggestion> loadDepartments() {
+        return departmentRepository.findAll().stream()
+                .map(department -> Suggestion.department(department.getCode(), department.getName(), department.getPopulation()))
+                .toList();
+    }
+
+    /**
+     * Apply a population change to a department of the index
+     * @param index the index
+     * @param code the department code, null for none
+     * @param delta the population change
+     * @return the patched index
+     */
+    private static PrefixIndex addPopulation(PrefixIndex index, String code, int delta) {
+        if (code == null || delta == 0) {
+            return index;
+        }
+        return index.replace(suggestion -> suggestion.isDepartment(code),
+                department -> Suggestion.department(code, department.name(), department.population() + delta));
+    }
+}
@@ -0,0 +1,31 @@
+package fr.diginamic.springdemo.services;
+
+import fr.diginamic.springdemo.entities.dtos.CityRow;
+import fr.diginamic.springdemo.events.CityWriteEvent;
+
+import java.util.List;
+
+/**
+ * An in-memory index of the cities, kept up to date by the {@link CityIndexLoader}
+ */
+public interface CityIndex {
+
+    /**
+     * Rebuild the index
+     * @param rows every city
+     */
+    void rebuild(List<CityRow> rows);
+
+    /**
+     * Apply a committed city write to the index, if it is built
+     * @param event the city write
+     * @param row the city as committed, or null if it was deleted
+     */
+    void update(CityWriteEvent event, CityRow row);
+
+    /**
+     * Reload the departments held by the index, if it is built, after departments are created or renamed
+     */
+    default void refreshDepartments() {
+    }
+}
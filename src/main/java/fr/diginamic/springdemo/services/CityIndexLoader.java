@@ -0,0 +1,173 @@
+package fr.diginamic.springdemo.services;
+
+import fr.diginamic.springdemo.entities.dtos.CityRow;
+import fr.diginamic.springdemo.events.CitiesReloadedEvent;
+import fr.diginamic.springdemo.events.CityWriteEvent;
+import fr.diginamic.springdemo.events.DepartmentsChangedEvent;
+import fr.diginamic.springdemo.repositories.CityRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Feeds every {@link CityIndex} from the database.
+ * A city write is read back once and applied to each index when it is committed, in the committing thread,
+ * so a client reads its own writes. A bulk write of cities reloads all the indexes from a single scan on a
+ * background thread, in commit order, so the committing thread does not wait for the scan: the indexes
+ * catch up with the database shortly after. Department creations and renamings are queued on the same thread.
+ * With cities.indexes.enabled=false the writes are not followed, the indexes are only built on their first read.
+ * @see CitiesReloadedEvent
+ * @see CityWriteEvent
+ * @see DepartmentsChangedEvent
+ */
+@Service
+public class CityIndexLoader {
+
+    /**
+     * The CityRepository
+     */
+    @Autowired
+    private CityRepository cityRepository;
+
+    /**
+     * The indexes of the cities
+     */
+    @Autowired
+    private List<CityIndex> indexes;
+
+    /**
+     * Whether the indexes follow the city writes
+     */
+    @Value("${cities.indexes.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * The executor updating the indexes, one change at a time
+     */
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    /**
+     * Whether the indexes were built at least once
+     */
+    private boolean loaded;
+
+    /**
+     * Build the indexes now, unless they are already built
+     */
+    public synchronized void load() {
+        if (!loaded) {
+            reload();
+        }
+    }
+
+    /**
+     * Build the indexes once the application is started, unless the startup import already did
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        submit("load", this::load);
+    }
+
+    /**
+     * Reload the indexes after a bulk write of cities
+     * @param event the bulk write
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCitiesReloaded(CitiesReloadedEvent event) {
+        submit(event.source(), this::reload);
+    }
+
+    /**
+     * Apply a city write to the indexes as soon as it is committed, in the committing thread,
+     * so that the writer reads its own write from the indexes
+     * @param event the city write
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCityWrite(CityWriteEvent event) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            update(event);
+        } catch (RuntimeException e) {
+            System.out.println("City indexes not updated (city " + event.cityId() + "): " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reload the departments of the indexes after departments are created or renamed
+     * @param event the department write
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDepartmentsChanged(DepartmentsChangedEvent event) {
+        submit(event.source(), this::refreshDepartments);
+    }
+
+    /**
+     * Reload every index from a single scan of the cities
+     */
+    private synchronized void reload() {
+        long start = System.nanoTime();
+        List<CityRow> rows = cityRepository.findAllRows();
+        indexes.forEach(index -> index.rebuild(rows));
+        loaded = true;
+        System.out.println(indexes.size() + " city indexes rebuilt from " + rows.size() + " cities in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    /**
+     * Read a written city back once and apply it to every index.
+     * A reload in progress is waited for, as it may have scanned the cities before the write was committed.
+     * @param event the city write
+     */
+    private synchronized void update(CityWriteEvent event) {
+        if (!loaded) {
+            // The first load reads the committed write
+            return;
+        }
+        CityRow row = cityRepository.findRowById(event.cityId()).orElse(null);
+        indexes.forEach(index -> index.update(event, row));
+    }
+
+    /**
+     * Reload the departments of every index
+     */
+    private synchronized void refreshDepartments() {
+        if (loaded) {
+            indexes.forEach(CityIndex::refreshDepartments);
+        }
+    }
+
+    /**
+     * Queue a change of the indexes
+     * @param change a description of the change, for the logs
+     * @param task the change
+     */
+    private void submit(String change, Runnable task) {
+        if (!enabled) {
+            return;
+        }
+        executor.execute(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                System.out.println("City indexes not updated (" + change + "): " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Stop the executor when the application shuts down
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
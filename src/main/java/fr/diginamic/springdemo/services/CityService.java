@@ -1,13 +1,25 @@
 package fr.diginamic.springdemo.services;
 
 import fr.diginamic.springdemo.entities.City;
+import fr.diginamic.springdemo.entities.dtos.CityDTO;
+import fr.diginamic.springdemo.entities.dtos.CursorPage;
+import fr.diginamic.springdemo.events.CityWriteEvent;
+import fr.diginamic.springdemo.exceptions.InvalidException;
 import fr.diginamic.springdemo.exceptions.NotFoundException;
 import fr.diginamic.springdemo.repositories.CityRepository;
+import fr.diginamic.springdemo.utils.CitySnapshot;
+import fr.diginamic.springdemo.utils.KeysetCursor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Service for the City entity
@@ -23,6 +35,19 @@ public class CityService {
     @Autowired
     private CityRepository cityRepository;
 
+    /**
+     * The ApplicationEventPublisher, used to publish the city writes
+     * @see CityWriteEvent
+     */
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    /**
+     * The CitySnapshotService, only present when cities.snapshot.enabled=true
+     */
+    @Autowired(required = false)
+    private CitySnapshotService citySnapshotService;
+
     /**
      * Get all cities
      * @return a set of cities
@@ -38,6 +63,67 @@ public class CityService {
         return cities;
     }
 
+    /**
+     * Pass every city to a consumer, one at a time, as they are read from a database cursor.
+     * Cities are read as DTOs, so nothing accumulates in the persistence context and memory stays flat
+     * whatever the size of the table.
+     * @param consumer the consumer of the cities
+     * @see CityRepository#streamAllDTOs()
+     */
+    @Transactional(readOnly = true)
+    public void forEachCity(Consumer<CityDTO> consumer) {
+        try (Stream<CityDTO> cities = cityRepository.streamAllDTOs()) {
+            cities.forEach(consumer);
+        }
+    }
+
+    /**
+     * Get a page of cities with keyset pagination
+     * Each page seeks from the cursor of the previous one, so a deep page costs the same as the first one.
+     * @param sort the sort key: "population" (descending) or "name" (ascending)
+     * @param cursor the cursor returned with the previous page, or null for the first page
+     * @param size the page size
+     * @param count whether the total number of cities is counted
+     * @return the page of cities
+     * @throws InvalidException if the sort key, the page size or the cursor is invalid
+     * @see KeysetCursor
+     */
+    public CursorPage<City> getCitiesPage(String sort, String cursor, int size, boolean count) throws InvalidException {
+        if (size < 1 || size > KeysetCursor.MAX_PAGE_SIZE) {
+            throw new InvalidException("The page size must be between 1 and " + KeysetCursor.MAX_PAGE_SIZE);
+        }
+        // One more city is read to know whether there is a next page
+        PageRequest limit = PageRequest.of(0, size + 1);
+        List<City> cities;
+        switch (sort) {
+            case "population" -> {
+                if (cursor == null) {
+                    cities = cityRepository.findFirstByPopulation(limit);
+                } else {
+                    String[] key = KeysetCursor.decode(cursor, 2);
+                    cities = cityRepository.findNextByPopulation(KeysetCursor.intValue(key[0], cursor), KeysetCursor.intValue(key[1], cursor), limit);
+                }
+            }
+            case "name" -> {
+                if (cursor == null) {
+                    cities = cityRepository.findFirstByName(limit);
+                } else {
+                    String[] key = KeysetCursor.decode(cursor, 2);
+                    cities = cityRepository.findNextByName(key[0], KeysetCursor.intValue(key[1], cursor), limit);
+                }
+            }
+            default -> throw new InvalidException("Cities can only be sorted by population or name");
+        }
+
+        String nextCursor = null;
+        if (cities.size() > size) {
+            cities = cities.subList(0, size);
+            City last = cities.getLast();
+            nextCursor = KeysetCursor.encode(sort.equals("population") ? last.getPopulation() : last.getName(), last.getId());
+        }
+        return new CursorPage<>(cities, nextCursor, count ? cityRepository.count() : null);
+    }
+
     /**
      * Get a city by its id
      * @param id the id of the city
@@ -75,11 +161,11 @@ public class CityService {
      * @param name the string to search for
      * @return the cities
      * @throws NotFoundException if no cities are found
-     * @see City
+     * @see CityDTO
      * @see CityRepository
      */
-    public Set<City> getCitiesByNameStartingWith(String name) throws NotFoundException {
-        Set<City> cities = new HashSet<>(cityRepository.findByNameStartingWith(name));
+    public Set<CityDTO> getCitiesByNameStartingWith(String name) throws NotFoundException {
+        Set<CityDTO> cities = new HashSet<>(cityRepository.findDTOsByNameStartingWith(name));
         if (cities.isEmpty()) {
             throw new NotFoundException("No cities found starting with " + name);
         }
@@ -91,11 +177,14 @@ public class CityService {
      * @param population the population to search for
      * @return the cities
      * @throws NotFoundException if no cities are found
-     * @see City
+     * @see CityDTO
      * @see CityRepository
      */
-    public Set<City> getCitiesByPopulationGreaterThan(int population) throws NotFoundException {
-        Set<City> cities = new HashSet<>(cityRepository.findByPopulationIsGreaterThan(population));
+    public Set<CityDTO> getCitiesByPopulationGreaterThan(int population) throws NotFoundException {
+        CitySnapshot snapshot = getSnapshot();
+        Set<CityDTO> cities = new HashSet<>(snapshot != null
+                ? snapshot.greaterThan(population)
+                : cityRepository.findDTOsByPopulationGreaterThan(population));
         if (cities.isEmpty()) {
             throw new NotFoundException("No cities found with a population greater than " + population);
         }
@@ -108,17 +197,41 @@ public class CityService {
      * @param max the maximum population
      * @return the cities
      * @throws NotFoundException if no cities are found
-     * @see City
+     * @see CityDTO
      * @see CityRepository
      */
-    public Set<City> getCitiesByPopulationRange(int min, int max) throws NotFoundException {
-        Set<City> cities = new HashSet<>(cityRepository.findByPopulationBetween(min, max));
+    public Set<CityDTO> getCitiesByPopulationRange(int min, int max) throws NotFoundException {
+        CitySnapshot snapshot = getSnapshot();
+        Set<CityDTO> cities = new HashSet<>(snapshot != null
+                ? snapshot.range(min, max)
+                : cityRepository.findDTOsByPopulationBetween(min, max));
         if (cities.isEmpty()) {
             throw new NotFoundException("No cities found with a population between " + min + " and " + max);
         }
         return cities;
     }
 
+    /**
+     * Get the in-memory snapshot of the cities
+     * @return the snapshot, or null if it is disabled or not built yet, in which case the database is queried
+     * @see CitySnapshotService
+     */
+    private CitySnapshot getSnapshot() {
+        return citySnapshotService != null ? citySnapshotService.getSnapshot() : null;
+    }
+
+    /**
+     * Create a city
+     * @param city the city
+     * @return the created city
+     */
+    @Transactional
+    public City create(City city) {
+        City savedCity = cityRepository.save(city);
+        eventPublisher.publishEvent(CityWriteEvent.created(savedCity));
+        return savedCity;
+    }
+
     /**
      * Update a city
      * @param id the id of the city
@@ -126,15 +239,19 @@ public class CityService {
      * @return the updated city
      * @throws NotFoundException if the city is not found
      */
+    @Transactional
     public City update(int id, City city) throws NotFoundException {
         City cityToUpdate = cityRepository.findById(id).orElse(null);
         if (cityToUpdate == null) {
             throw new NotFoundException("City with id " + id + " not found");
         }
+        String previousDepartmentCode = CityWriteEvent.departmentCode(cityToUpdate);
+        int previousPopulation = cityToUpdate.getPopulation();
         cityToUpdate.setName(city.getName());
         cityToUpdate.setPopulation(city.getPopulation());
         cityToUpdate.setDepartment(city.getDepartment());
         cityRepository.save(cityToUpdate);
+        eventPublisher.publishEvent(CityWriteEvent.updated(cityToUpdate, previousDepartmentCode, previousPopulation));
         return cityToUpdate;
     }
 
@@ -143,11 +260,13 @@ public class CityService {
      * @param id the id of the city
      * @throws NotFoundException if the city is not found
      */
+    @Transactional
     public void delete(int id) throws NotFoundException {
         City city = cityRepository.findById(id).orElse(null);
         if (city == null) {
             throw new NotFoundException("City with id " + id + " not found");
         }
         cityRepository.delete(city);
+        eventPublisher.publishEvent(CityWriteEvent.deleted(city));
     }
 }
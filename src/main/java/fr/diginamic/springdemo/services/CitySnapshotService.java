@@ -0,0 +1,46 @@
+package fr.diginamic.springdemo.services;
+
+import fr.diginamic.springdemo.entities.dtos.CityRow;
+import fr.diginamic.springdemo.events.CityWriteEvent;
+import fr.diginamic.springdemo.utils.CitySnapshot;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * In-memory read engine for the population range queries, enabled with cities.snapshot.enabled=true.
+ * It holds an immutable {@link CitySnapshot} of every city, fed by the {@link CityIndexLoader}.
+ * Readers never lock, they use whichever snapshot is current.
+ * @see CityService#getCitiesByPopulationRange(int, int)
+ */
+@Service
+@ConditionalOnProperty(name = "cities.snapshot.enabled", havingValue = "true")
+public class CitySnapshotService implements CityIndex {
+
+    /**
+     * The current snapshot, null until the first build
+     */
+    private volatile CitySnapshot snapshot;
+
+    /**
+     * Get the current snapshot
+     * @return the snapshot, or null if it is not built yet
+     */
+    public CitySnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    @Override
+    public synchronized void rebuild(List<CityRow> rows) {
+        snapshot = CitySnapshot.of(rows);
+    }
+
+    @Override
+    public synchronized void update(CityWriteEvent event, CityRow row) {
+        CitySnapshot current = snapshot;
+        if (current != null) {
+            snapshot = row != null ? current.with(row) : current.without(event.cityId());
+        }
+    }
+}
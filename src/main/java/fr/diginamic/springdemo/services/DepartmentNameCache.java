@@ -0,0 +1,185 @@
+package fr.diginamic.springdemo.services;
+
+import fr.diginamic.springdemo.exceptions.NotFoundException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, TTL-based cache of department names in front of the {@link DepartmentNameClient}.
+ * Unknown codes are cached too (with a shorter TTL), so repeated lookups of a bad code do not reach the remote.
+ * Remote failures are not cached.
+ */
+@Component
+public class DepartmentNameCache {
+
+    /**
+     * A cached lookup
+     * @param name the department name, or null for an unknown code
+     * @param expiresAt the expiry time, from {@link System#nanoTime()}
+     */
+    private record Entry(String name, long expiresAt) {
+    }
+
+    /**
+     * The DepartmentNameClient
+     */
+    @Autowired
+    private DepartmentNameClient client;
+
+    /**
+     * The maximum number of cached codes
+     */
+    @Value("${department.names.cache.max-size:512}")
+    private int maxSize;
+
+    /**
+     * The time to live of a known name
+     */
+    @Value("${department.names.cache.ttl:24h}")
+    private Duration ttl;
+
+    /**
+     * The time to live of an unknown code
+     */
+    @Value("${department.names.cache.negative-ttl:10m}")
+    private Duration negativeTtl;
+
+    /**
+     * The cached lookups, in access order so that the least recently used code is evicted first
+     */
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            boolean evict = size() > maxSize;
+            if (evict) {
+                evictions.incrementAndGet();
+            }
+            return evict;
+        }
+    };
+
+    /**
+     * The number of lookups answered from the cache
+     */
+    private final AtomicLong hits = new AtomicLong();
+
+    /**
+     * The number of lookups sent to the remote
+     */
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * The number of evicted codes
+     */
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Get the name of a department
+     * @param code the department code
+     * @return the department name
+     * @throws NotFoundException if the code is unknown
+     */
+    public String getName(String code) throws NotFoundException {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(code);
+        }
+        if (entry != null && entry.expiresAt() - System.nanoTime() > 0) {
+            hits.incrementAndGet();
+        } else {
+            misses.incrementAndGet();
+            String name = client.fetchName(code);
+            entry = new Entry(name, System.nanoTime() + (name == null ? negativeTtl : ttl).toNanos());
+            synchronized (entries) {
+                entries.put(code, entry);
+            }
+        }
+        if (entry.name() == null) {
+            throw new NotFoundException("No department found with code " + code);
+        }
+        return entry.name();
+    }
+
+    /**
+     * Put a known name in the cache
+     * @param code the department code
+     * @param name the department name
+     */
+    public void put(String code, String name) {
+        synchronized (entries) {
+            entries.put(code, new Entry(name, System.nanoTime() + ttl.toNanos()));
+        }
+    }
+
+    /**
+     * Load the names of every department with a single call to the remote, and cache them
+     * @return the department names by code, empty if the remote cannot list its departments
+     */
+    public Map<String, String> prefetch() {
+        Map<String, String> names = client.fetchAll();
+        long expiresAt = System.nanoTime() + ttl.toNanos();
+        synchronized (entries) {
+            names.forEach((code, name) -> entries.put(code, new Entry(name, expiresAt)));
+        }
+        return names;
+    }
+
+    /**
+     * Empty the cache
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * Get the number of lookups answered from the cache
+     * @return a long
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Get the number of lookups sent to the remote
+     * @return a long
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Get the number of evicted codes
+     * @return a long
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Get the number of cached codes
+     * @return an integer
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "{" +
+                "size=" + size() +
+                ", hits=" + hits +
+                ", misses=" + misses +
+                ", evictions=" + evictions +
+                '}';
+    }
+}
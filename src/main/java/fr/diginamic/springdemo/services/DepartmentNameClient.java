@@ -0,0 +1,24 @@
+package fr.diginamic.springdemo.services;
+
+import java.util.Map;
+
+/**
+ * Source of department names, looked up by department code
+ * @see GeoApiDepartmentNameClient
+ * @see StubDepartmentNameClient
+ */
+public interface DepartmentNameClient {
+
+    /**
+     * Fetch the name of a department
+     * @param code the department code
+     * @return the department name, or null if the code is unknown
+     */
+    String fetchName(String code);
+
+    /**
+     * Fetch the names of every department known to the source, in a single call
+     * @return the department names by code, empty if the source cannot list its departments
+     */
+    Map<String, String> fetchAll();
+}
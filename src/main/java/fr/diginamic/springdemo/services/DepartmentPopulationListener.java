@@ -0,0 +1,46 @@
+package fr.diginamic.springdemo.services;
+
+import fr.diginamic.springdemo.events.CityWriteEvent;
+import fr.diginamic.springdemo.repositories.DepartmentRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Objects;
+
+/**
+ * Keeps the stored population of the departments up to date as cities are written.
+ * The listener runs in the transaction of the city write, so the department total is committed with it.
+ * @see CityWriteEvent
+ */
+@Component
+public class DepartmentPopulationListener {
+
+    /**
+     * The DepartmentRepository
+     */
+    @Autowired
+    private DepartmentRepository departmentRepository;
+
+    /**
+     * Apply the population change of a city to its department(s)
+     * @param event the city write
+     */
+    @EventListener
+    public void onCityWrite(CityWriteEvent event) {
+        if (Objects.equals(event.previousDepartmentCode(), event.departmentCode())) {
+            int delta = event.population() - event.previousPopulation();
+            if (event.departmentCode() != null && delta != 0) {
+                departmentRepository.addPopulation(event.departmentCode(), delta);
+            }
+            return;
+        }
+        // The city moved from one department to another
+        if (event.previousDepartmentCode() != null) {
+            departmentRepository.addPopulation(event.previousDepartmentCode(), -event.previousPopulation());
+        }
+        if (event.departmentCode() != null) {
+            departmentRepository.addPopulation(event.departmentCode(), event.population());
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package fr.diginamic.springdemo.services;
+
+import fr.diginamic.springdemo.entities.dtos.CityDTO;
+import fr.diginamic.springdemo.entities.dtos.CityRank;
+import fr.diginamic.springdemo.entities.dtos.CityRow;
+import fr.diginamic.springdemo.events.CityWriteEvent;
+import fr.diginamic.springdemo.utils.DepartmentRankings;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Rankings of the cities of each department by population, served from in-memory {@link DepartmentRankings}
+ * fed by the {@link CityIndexLoader}.
+ * @see DepartmentService#getTopNCities(String, int)
+ */
+@Service
+public class DepartmentRankingService implements CityIndex {
+
+    /**
+     * The CityIndexLoader, used to build the rankings if a read comes before they are built
+     */
+    @Autowired
+    private ObjectProvider<CityIndexLoader> cityIndexLoader;
+
+    /**
+     * The current rankings, null until the first build
+     */
+    private volatile DepartmentRankings rankings;
+
+    /**
+     * Get the most populated cities of a department
+     * @param code the department code
+     * @param count the number of cities
+     * @return the cities, most populated first, empty if the department has no city
+     */
+    public List<CityDTO> getTopCities(String code, int count) {
+        return getRankings().top(code, count);
+    }
+
+    /**
+     * Get the rank of a city in its department
+     * @param code the department code
+     * @param id the city id
+     * @return the rank, or null if the city is not in the department
+     */
+    public CityRank getRank(String code, int id) {
+        return getRankings().rank(code, id);
+    }
+
+    @Override
+    public synchronized void rebuild(List<CityRow> rows) {
+        rankings = DepartmentRankings.of(rows);
+    }
+
+    @Override
+    public synchronized void update(CityWriteEvent event, CityRow row) {
+        DepartmentRankings current = rankings;
+        if (current != null) {
+            rankings = row != null ? current.with(row) : current.without(event.cityId());
+        }
+    }
+
+    /**
+     * Get the current rankings, building them if needed
+     * @return the rankings
+     */
+    private DepartmentRankings getRankings() {
+        if (rankings == null) {
+            cityIndexLoader.getObject().load();
+        }
+        return rankings;
+    }
+}
@@ -0,0 +1,85 @@
+package fr.diginamic.springdemo.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Offline reference of the department names, bundled with the application (departements.csv, "code;nom" lines).
+ * It is loaded once at startup into two sorted parallel arrays and never changes afterwards,
+ * so lookups are a lock-free binary search.
+ * The remote is only consulted for the codes missing from it.
+ * @see DepartmentService#addName(fr.diginamic.springdemo.entities.Department, String)
+ */
+@Component
+public class DepartmentReference {
+
+    /**
+     * The department codes, sorted
+     */
+    private final String[] codes;
+
+    /**
+     * The department names, in the order of the codes
+     */
+    private final String[] names;
+
+    /**
+     * Constructor
+     * @param resource the reference file
+     * @throws IOException if the reference file cannot be read
+     */
+    public DepartmentReference(@Value("${department.names.reference:classpath:departements.csv}") Resource resource) throws IOException {
+        Map<String, String> entries = new TreeMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8))) {
+            String line = reader.readLine(); // Skip the header line
+            while ((line = reader.readLine()) != null) {
+                int separator = line.indexOf(';');
+                if (separator > 0) {
+                    entries.put(line.substring(0, separator).trim(), line.substring(separator + 1).trim());
+                }
+            }
+        }
+        this.codes = entries.keySet().toArray(String[]::new);
+        this.names = entries.values().toArray(String[]::new);
+        System.out.println(codes.length + " department names loaded from " + resource.getFilename());
+    }
+
+    /**
+     * Get the name of a department
+     * @param code the department code
+     * @return the department name, or null if the code is not in the reference
+     */
+    public String getName(String code) {
+        if (code == null) {
+            return null;
+        }
+        int index = Arrays.binarySearch(codes, code);
+        return index < 0 ? null : names[index];
+    }
+
+    /**
+     * Check if a department is in the reference
+     * @param code the department code
+     * @return a boolean
+     */
+    public boolean contains(String code) {
+        return getName(code) != null;
+    }
+
+    /**
+     * Get the number of departments in the reference
+     * @return an integer
+     */
+    public int size() {
+        return codes.length;
+    }
+}
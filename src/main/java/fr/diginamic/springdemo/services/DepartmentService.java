@@ -2,21 +2,43 @@ package fr.diginamic.springdemo.services;
 
 import fr.diginamic.springdemo.entities.City;
 import fr.diginamic.springdemo.entities.Department;
-import fr.diginamic.springdemo.entities.dtos.DepartmentDTO;
+import fr.diginamic.springdemo.entities.dtos.CityDTO;
+import fr.diginamic.springdemo.entities.dtos.CityRank;
+import fr.diginamic.springdemo.entities.dtos.CursorPage;
+import fr.diginamic.springdemo.events.CitiesReloadedEvent;
+import fr.diginamic.springdemo.events.DepartmentsChangedEvent;
+import fr.diginamic.springdemo.exceptions.InvalidException;
 import fr.diginamic.springdemo.exceptions.NotFoundException;
 import fr.diginamic.springdemo.repositories.CityRepository;
 import fr.diginamic.springdemo.repositories.DepartmentRepository;
+import fr.diginamic.springdemo.utils.KeysetCursor;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Limit;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 
 /**
  * Service for the Department entity
@@ -25,13 +47,17 @@ import java.util.Set;
 @Service
 public class DepartmentService {
 
-    private final String apiUrl = "https://geo.api.gouv.fr/departements";
+    /**
+     * The DepartmentReference, the bundled department names
+     */
+    @Autowired
+    private DepartmentReference departmentReference;
 
     /**
-     * The RestTemplate
+     * The DepartmentNameCache, for the codes missing from the reference
      */
     @Autowired
-    private RestTemplate restTemplate;
+    private DepartmentNameCache departmentNameCache;
 
     /**
      * The DepartmentRepository
@@ -45,6 +71,49 @@ public class DepartmentService {
     @Autowired
     private CityRepository cityRepository;
 
+    /**
+     * The DepartmentRankingService, holding the cities of each department by population
+     */
+    @Autowired
+    private DepartmentRankingService departmentRankingService;
+
+    /**
+     * The JdbcTemplate, used to write department names in one batch
+     */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * The TransactionTemplate, used to commit new departments before the callers waiting on them are released
+     */
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * The ApplicationEventPublisher, used to announce the writes changing many cities at once, or departments only
+     * @see CitiesReloadedEvent
+     * @see DepartmentsChangedEvent
+     */
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    /**
+     * The department creations in progress, by code
+     */
+    private final Map<String, CompletableFuture<Department>> creations = new ConcurrentHashMap<>();
+
+    /**
+     * Whether department names are fetched all at once rather than code by code
+     */
+    @Value("${department.names.bulk:true}")
+    private boolean bulkNames;
+
+    /**
+     * The maximum number of names fetched from the remote at the same time
+     */
+    @Value("${department.names.max-concurrency:8}")
+    private int maxConcurrency;
+
     /**
      * Get all departments
      * @return a set of departments
@@ -60,6 +129,61 @@ public class DepartmentService {
         return departments;
     }
 
+    /**
+     * Get all departments with their cities
+     * The departments and their cities are read in a single query.
+     * @return a set of departments, their cities initialized
+     * @throws NotFoundException if no departments are found
+     * @see DepartmentRepository#findAllWithCities()
+     */
+    public Set<Department> getDepartmentsWithCities() throws NotFoundException {
+        Set<Department> departments = new HashSet<>(departmentRepository.findAllWithCities());
+        if (departments.isEmpty()) {
+            throw new NotFoundException("No departments found");
+        }
+        return departments;
+    }
+
+    /**
+     * Get a page of departments with their cities
+     * The page is read in a constant number of queries: the page of codes, its count, then the departments and their cities.
+     * @param pageable the page request
+     * @return a page of departments, their cities initialized
+     * @see DepartmentRepository#findAllCodes(Pageable)
+     */
+    public Page<Department> getDepartmentsWithCities(Pageable pageable) {
+        Page<String> codes = departmentRepository.findAllCodes(pageable);
+        Map<String, Department> departments = new HashMap<>();
+        departmentRepository.findWithCitiesByCodeIn(codes.getContent()).forEach(department -> departments.put(department.getCode(), department));
+        return codes.map(departments::get);
+    }
+
+    /**
+     * Get a page of departments with their cities, with keyset pagination on the department code
+     * @param cursor the cursor returned with the previous page, or null for the first page
+     * @param size the page size
+     * @param count whether the total number of departments is counted
+     * @return the page of departments, their cities initialized
+     * @throws InvalidException if the page size or the cursor is invalid
+     * @see KeysetCursor
+     */
+    public CursorPage<Department> getDepartmentsPage(String cursor, int size, boolean count) throws InvalidException {
+        if (size < 1 || size > KeysetCursor.MAX_PAGE_SIZE) {
+            throw new InvalidException("The page size must be between 1 and " + KeysetCursor.MAX_PAGE_SIZE);
+        }
+        String after = cursor == null ? "" : KeysetCursor.decode(cursor, 1)[0];
+        // One more code is read to know whether there is a next page
+        List<String> codes = departmentRepository.findCodesAfter(after, PageRequest.of(0, size + 1));
+        String nextCursor = null;
+        if (codes.size() > size) {
+            codes = codes.subList(0, size);
+            nextCursor = KeysetCursor.encode(codes.getLast());
+        }
+        Map<String, Department> departments = new HashMap<>();
+        departmentRepository.findWithCitiesByCodeIn(codes).forEach(department -> departments.put(department.getCode(), department));
+        return new CursorPage<>(codes.stream().map(departments::get).toList(), nextCursor, count ? departmentRepository.count() : null);
+    }
+
     /**
      * Get a department by its code
      * @param code the code of the department
@@ -114,11 +238,11 @@ public class DepartmentService {
      * @param code the code of the department
      * @return a set of cities
      * @throws NotFoundException if no cities are found
-     * @see City
+     * @see CityDTO
      * @see CityRepository
      */
-    public Set<City> getCities(String code) throws NotFoundException {
-        Set<City> cities = cityRepository.findCitiesByDepartment_Code(code);
+    public Set<CityDTO> getCities(String code) throws NotFoundException {
+        Set<CityDTO> cities = new HashSet<>(cityRepository.findDTOsByDepartmentCode(code));
         if (cities.isEmpty()) {
             throw new NotFoundException("No cities found in department with code " + code);
         }
@@ -127,25 +251,41 @@ public class DepartmentService {
 
     /**
      * Get the top N cities in a department
+     * The cities are a slice of the in-memory ranking of the department, no query is run.
      * @param code the code of the department
      * @param nbCities the number of cities to get
      * @return a list of cities
      * @throws NotFoundException if no cities are found
-     * @see City
-     * @see CityRepository
-     * @see Limit
+     * @see CityDTO
+     * @see DepartmentRankingService
      */
-    public List<City> getTopNCities(String code, int nbCities) throws NotFoundException {
-        Page<City> citiesPage = cityRepository.findAllByDepartment_CodeOrderByPopulationDesc(code, PageRequest.of(0, nbCities));
-        List<City> cities = (citiesPage.getContent());
+    public List<CityDTO> getTopNCities(String code, int nbCities) throws NotFoundException {
+        List<CityDTO> cities = departmentRankingService.getTopCities(code, nbCities);
         if (cities.isEmpty()) {
             throw new NotFoundException("No cities found in department with code " + code);
         }
         return cities;
     }
 
-    public Set<City> getCitiesWithPopulationRange(String code, int minPopulation, int maxPopulation) throws NotFoundException {
-        Set<City> cities = cityRepository.findCitiesByPopulationBetweenAndDepartment_Code(minPopulation, maxPopulation, code);
+    /**
+     * Get the rank of a city among the cities of its department, by population
+     * @param code the code of the department
+     * @param id the id of the city
+     * @return the rank of the city
+     * @throws NotFoundException if the city is not in the department
+     * @see CityRank
+     * @see DepartmentRankingService
+     */
+    public CityRank getCityRank(String code, int id) throws NotFoundException {
+        CityRank rank = departmentRankingService.getRank(code, id);
+        if (rank == null) {
+            throw new NotFoundException("City with id " + id + " not found in department with code " + code);
+        }
+        return rank;
+    }
+
+    public Set<CityDTO> getCitiesWithPopulationRange(String code, int minPopulation, int maxPopulation) throws NotFoundException {
+        Set<CityDTO> cities = new HashSet<>(cityRepository.findDTOsByDepartmentCodeAndPopulationBetween(code, minPopulation, maxPopulation));
         if (cities.isEmpty()) {
             throw new NotFoundException("No cities found in department with code " + code);
         }
@@ -154,14 +294,76 @@ public class DepartmentService {
 
     /**
      * Create a department
+     * Concurrent creations of the same code are coalesced, see {@link #createAll(Collection)}.
      * @param department the department
      * @return the department
      * @throws NotFoundException if the department is not found
      */
     public Department create(Department department) throws NotFoundException {
-        addName(department, department.getCode()); // Set the department name using the addName method
-        departmentRepository.save(department); // Save the department to the database
-        return department;
+        return createAll(List.of(department)).getFirst();
+    }
+
+    /**
+     * Create several departments at once
+     * The department names are resolved concurrently, then all of them are saved in a single, short transaction.
+     * Creations are coalesced by code: a department already being created by another caller is neither enriched
+     * nor inserted again, the call waits for that creation and returns its result instead.
+     * @param departments the departments
+     * @return the saved departments
+     * @see #resolveNames(Collection)
+     */
+    public List<Department> createAll(Collection<Department> departments) {
+        Map<String, CompletableFuture<Department>> led = new LinkedHashMap<>();
+        List<CompletableFuture<Department>> followed = new ArrayList<>();
+        List<Department> toSave = new ArrayList<>();
+        for (Department department : departments) {
+            CompletableFuture<Department> creation = new CompletableFuture<>();
+            CompletableFuture<Department> inFlight = creations.putIfAbsent(department.getCode(), creation);
+            if (inFlight != null) {
+                followed.add(inFlight);
+            } else {
+                led.put(department.getCode(), creation);
+                toSave.add(department);
+            }
+        }
+
+        List<Department> saved;
+        try {
+            // Names are resolved before the transaction starts, so no connection is held during the remote lookups
+            Map<String, String> names = toSave.isEmpty() ? Map.of() : resolveNames(led.keySet());
+            toSave.forEach(department -> {
+                String name = names.get(department.getCode());
+                if (name == null) {
+                    throw new RuntimeException("Failed to fetch department name for code " + department.getCode());
+                }
+                department.setName(name);
+            });
+            saved = toSave.isEmpty() ? new ArrayList<>() : transactionTemplate.execute(status -> {
+                // An existing department keeps its stored population, which is maintained from its cities
+                departmentRepository.findByCodeIn(led.keySet()).forEach(existing -> toSave.stream()
+                        .filter(department -> department.getCode().equals(existing.getCode()))
+                        .forEach(department -> department.setPopulation(existing.getPopulation())));
+                return new ArrayList<>(departmentRepository.saveAll(toSave));
+            });
+            saved.forEach(department -> led.get(department.getCode()).complete(department));
+            if (!saved.isEmpty()) {
+                eventPublisher.publishEvent(new DepartmentsChangedEvent(saved.size() + " departments created"));
+            }
+        } catch (RuntimeException e) {
+            led.values().forEach(creation -> creation.completeExceptionally(e));
+            throw e;
+        } finally {
+            led.forEach(creations::remove);
+        }
+
+        for (CompletableFuture<Department> creation : followed) {
+            try {
+                saved.add(creation.join());
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+        return saved;
     }
 
     /**
@@ -170,6 +372,7 @@ public class DepartmentService {
      * @param cities the list of cities
      * @return the department
      */
+    @Transactional
     public Department addCities(String code, Set<City> cities) throws NotFoundException {
         Department department = departmentRepository.findByCode(code);
         if (department == null) {
@@ -177,29 +380,30 @@ public class DepartmentService {
         }
         cities.forEach(city -> city.setDepartment(department));
         cityRepository.saveAll(cities);
-        return department;
+        // The cities may come from other departments, recompute every total in one statement
+        departmentRepository.refreshPopulations();
+        eventPublisher.publishEvent(new CitiesReloadedEvent("cities added to department " + code));
+        return departmentRepository.findByCode(code);
     }
 
     /**
      * Add the name of a department based on its code.
-     * This method fetches the department name using an external API and sets it on the provided Department entity.
+     * The name is taken from the bundled reference, the remote (through the name cache) is only asked for unknown codes.
      *
      * @param department The department entity to update.
      * @param code       The code of the department to fetch the name for.
+     * @see DepartmentReference
+     * @see DepartmentNameCache
      */
     public void addName(Department department, String code) {
         if (department != null) {
-            String url = apiUrl + "?code=" + code + "&fields=nom,code";
-
+            String name = departmentReference.getName(code);
+            if (name != null) {
+                department.setName(name);
+                return;
+            }
             try {
-                DepartmentDTO[] departmentDTOs = restTemplate.getForObject(url, DepartmentDTO[].class);
-                if (departmentDTOs != null && departmentDTOs.length > 0) {
-                    DepartmentDTO firstDepartmentDTO = departmentDTOs[0];
-                    department.setName(firstDepartmentDTO.getName());
-                } else {
-                    // Handle case where no department name is returned
-                    throw new NotFoundException("No department found with code " + code);
-                }
+                department.setName(departmentNameCache.getName(code));
             } catch (Exception e) {
                 // Handle errors during API call
                 throw new RuntimeException("Failed to fetch department name for code " + code, e);
@@ -207,6 +411,145 @@ public class DepartmentService {
         }
     }
 
+    /**
+     * Resolve the names of several departments.
+     * Names are taken from the bundled reference; the other codes are looked up through the name cache
+     * concurrently, on virtual threads, with at most department.names.max-concurrency calls to the remote at a time.
+     * Codes that cannot be resolved (unknown, remote failure or open circuit) are left out of the result.
+     * @param codes the department codes
+     * @return the department names by code
+     */
+    public Map<String, String> resolveNames(Collection<String> codes) {
+        Map<String, String> names = new ConcurrentHashMap<>();
+        List<String> unknown = new ArrayList<>();
+        for (String code : codes) {
+            String name = departmentReference.getName(code);
+            if (name != null) {
+                names.put(code, name);
+            } else {
+                unknown.add(code);
+            }
+        }
+        if (unknown.isEmpty()) {
+            return names;
+        }
+
+        Semaphore permits = new Semaphore(maxConcurrency);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (String code : unknown) {
+                executor.submit(() -> {
+                    permits.acquire();
+                    try {
+                        names.put(code, departmentNameCache.getName(code));
+                    } catch (NotFoundException | RuntimeException e) {
+                        System.out.println("No name found for department " + code + ": " + e.getMessage());
+                    } finally {
+                        permits.release();
+                    }
+                    return null;
+                });
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Prime the name cache for departments about to be created.
+     * The remote is called once for all of them, and only if several codes are missing from the reference.
+     * @param codes the department codes
+     * @see #prefetchNames()
+     */
+    public void prefetchNames(Collection<String> codes) {
+        long unknown = codes.stream().filter(code -> !departmentReference.contains(code)).count();
+        if (unknown > 1) {
+            prefetchNames();
+        }
+    }
+
+    /**
+     * Load the names of every department with a single remote call, priming the name cache
+     * so that the following {@link #addName(Department, String)} calls do not reach the remote.
+     * A failed call is not fatal: names are then fetched code by code.
+     * @return the department names by code, empty if bulk fetching is disabled or failed
+     * @see DepartmentNameCache#prefetch()
+     */
+    public Map<String, String> prefetchNames() {
+        if (!bulkNames) {
+            return Map.of();
+        }
+        try {
+            return departmentNameCache.prefetch();
+        } catch (RuntimeException e) {
+            System.out.println("Bulk fetch of department names failed, falling back to per-code lookups: " + e.getMessage());
+            return Map.of();
+        }
+    }
+
+    /**
+     * Refresh the names of all stored departments.
+     * Names come from the bundled reference; the codes missing from it are fetched from the remote all at once,
+     * or one by one when the names could not be fetched all at once.
+     * Every changed name is then written in a single batch update, in a short transaction opened once every name is known,
+     * so that no connection is held during the remote calls.
+     * @return the number of renamed departments
+     */
+    public int refreshNames() {
+        List<String> codes = jdbcTemplate.queryForList("select code from department", String.class);
+        Map<String, String> names = new HashMap<>();
+        List<String> unknown = new ArrayList<>();
+        for (String code : codes) {
+            String name = departmentReference.getName(code);
+            if (name != null) {
+                names.put(code, name);
+            } else {
+                unknown.add(code);
+            }
+        }
+
+        Map<String, String> fetched = unknown.size() > 1 ? prefetchNames() : Map.of();
+        if (fetched.isEmpty()) {
+            names.putAll(resolveNames(unknown));
+        } else {
+            unknown.stream().filter(fetched::containsKey).forEach(code -> names.put(code, fetched.get(code)));
+        }
+
+        List<String> known = new ArrayList<>(names.keySet());
+        if (known.isEmpty()) {
+            return 0;
+        }
+        int[][] counts = transactionTemplate.execute(status -> jdbcTemplate.batchUpdate(
+                "update department set name = ? where code = ? and (name is null or name <> ?)",
+                known, known.size(), (ps, code) -> {
+                    ps.setString(1, names.get(code));
+                    ps.setString(2, code);
+                    ps.setString(3, names.get(code));
+                }));
+        int renamed = Arrays.stream(counts).flatMapToInt(Arrays::stream).sum();
+        if (renamed > 0) {
+            eventPublisher.publishEvent(new DepartmentsChangedEvent(renamed + " departments renamed"));
+        }
+        return renamed;
+    }
+
+    /**
+     * Refresh the department names on the schedule set by department.names.refresh-cron (disabled by default)
+     * @see #refreshNames()
+     */
+    @Scheduled(cron = "${department.names.refresh-cron:-}")
+    public void scheduledRefreshNames() {
+        System.out.println(refreshNames() + " department names refreshed");
+    }
+
+    /**
+     * Recompute the stored population of every department from its cities, after a bulk write of cities
+     * @return the number of updated departments
+     * @see DepartmentRepository#refreshPopulations()
+     */
+    @Transactional
+    public int refreshPopulations() {
+        return departmentRepository.refreshPopulations();
+    }
+
     /**
      * Update a department
      * @param code the code of the department
@@ -220,6 +563,7 @@ public class DepartmentService {
         departmentToUpdate.setCode(department.getCode());
         departmentToUpdate.setCities(department.getCities());
         departmentRepository.save(departmentToUpdate);
+        eventPublisher.publishEvent(new CitiesReloadedEvent("department " + code + " updated"));
         return departmentToUpdate;
     }
 
@@ -235,5 +579,6 @@ public class DepartmentService {
             cityRepository.deleteAll(cities); // Delete all cities associated with the department
         }
         departmentRepository.delete(department); // Now, delete the department
+        eventPublisher.publishEvent(new CitiesReloadedEvent("department " + code + " deleted"));
     }
 }
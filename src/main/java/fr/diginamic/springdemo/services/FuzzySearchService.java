@@ -0,0 +1,78 @@
+package fr.diginamic.springdemo.services;
+
+import fr.diginamic.springdemo.entities.dtos.CityMatch;
+import fr.diginamic.springdemo.entities.dtos.CityRow;
+import fr.diginamic.springdemo.events.CityWriteEvent;
+import fr.diginamic.springdemo.exceptions.InvalidException;
+import fr.diginamic.springdemo.utils.TextNormalizer;
+import fr.diginamic.springdemo.utils.TrigramIndex;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Typo-tolerant search of the city names, served from an in-memory {@link TrigramIndex}
+ * fed by the {@link CityIndexLoader}.
+ * @see fr.diginamic.springdemo.controllers.SearchController
+ */
+@Service
+public class FuzzySearchService implements CityIndex {
+
+    /**
+     * The maximum number of results of a search
+     */
+    public static final int MAX_LIMIT = 100;
+
+    /**
+     * The CityIndexLoader, used to build the index if a search comes before it is built
+     */
+    @Autowired
+    private ObjectProvider<CityIndexLoader> cityIndexLoader;
+
+    /**
+     * The minimum score of a match, from 0 to 1
+     */
+    @Value("${search.fuzzy.min-score:0.3}")
+    private double minScore;
+
+    /**
+     * The current index, null until the first build
+     */
+    private volatile TrigramIndex index;
+
+    /**
+     * Get the cities whose name is the most similar to a query, whatever its case, accents, punctuation or typos
+     * @param query the query
+     * @param limit the maximum number of results
+     * @return the cities, best match first, the most populated first on ties
+     * @throws InvalidException if the query has no letter or digit, or if the limit is out of bounds
+     */
+    public List<CityMatch> search(String query, int limit) throws InvalidException {
+        if (TextNormalizer.normalize(query).isEmpty()) {
+            throw new InvalidException("The search must contain at least one letter or digit");
+        }
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new InvalidException("The limit must be between 1 and " + MAX_LIMIT);
+        }
+        if (index == null) {
+            cityIndexLoader.getObject().load();
+        }
+        return index.search(query, limit, minScore);
+    }
+
+    @Override
+    public synchronized void rebuild(List<CityRow> rows) {
+        index = TrigramIndex.of(rows);
+    }
+
+    @Override
+    public synchronized void update(CityWriteEvent event, CityRow row) {
+        TrigramIndex current = index;
+        if (current != null) {
+            index = row != null ? current.with(row) : current.without(event.cityId());
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package fr.diginamic.springdemo.services;
+
+import fr.diginamic.springdemo.entities.dtos.DepartmentDTO;
+import fr.diginamic.springdemo.utils.CircuitBreaker;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Department names fetched from the geo.api.gouv.fr API.
+ * Calls go through a circuit breaker, so that a degraded API fails fast instead of stalling every lookup
+ * until its timeout.
+ * @see fr.diginamic.springdemo.config.AppConfig#restTemplate
+ */
+@Component
+@ConditionalOnProperty(name = "department.names.remote", havingValue = "geo", matchIfMissing = true)
+public class GeoApiDepartmentNameClient implements DepartmentNameClient {
+
+    /**
+     * A department as listed by the API
+     * @param code the department code
+     * @param nom the department name
+     */
+    private record GeoDepartment(String code, String nom) {
+    }
+
+    private final String apiUrl = "https://geo.api.gouv.fr/departements";
+
+    /**
+     * The RestTemplate
+     */
+    @Autowired
+    private RestTemplate restTemplate;
+
+    /**
+     * The number of consecutive failures opening the circuit
+     */
+    @Value("${department.names.circuit.failure-threshold:5}")
+    private int failureThreshold;
+
+    /**
+     * The time the circuit stays open before a trial call
+     */
+    @Value("${department.names.circuit.open-duration:30s}")
+    private Duration openDuration;
+
+    /**
+     * The circuit breaker guarding the API calls
+     */
+    private CircuitBreaker circuitBreaker;
+
+    /**
+     * Create the circuit breaker once the settings are injected
+     */
+    @PostConstruct
+    public void init() {
+        circuitBreaker = new CircuitBreaker("geo.api.gouv.fr", failureThreshold, openDuration);
+    }
+
+    @Override
+    public String fetchName(String code) {
+        String url = apiUrl + "?code=" + code + "&fields=nom,code";
+        DepartmentDTO[] departmentDTOs = circuitBreaker.call(() -> restTemplate.getForObject(url, DepartmentDTO[].class));
+        if (departmentDTOs != null && departmentDTOs.length > 0) {
+            return departmentDTOs[0].getName();
+        }
+        return null;
+    }
+
+    @Override
+    public Map<String, String> fetchAll() {
+        GeoDepartment[] departments = circuitBreaker.call(() -> restTemplate.getForObject(apiUrl + "?fields=nom,code", GeoDepartment[].class));
+        Map<String, String> names = new HashMap<>();
+        if (departments != null) {
+            for (GeoDepartment department : departments) {
+                names.put(department.code(), department.nom());
+            }
+        }
+        return names;
+    }
+}
@@ -0,0 +1,157 @@
+package fr.diginamic.springdemo.services;
+
+import fr.diginamic.springdemo.entities.dtos.ImportJobDTO;
+import fr.diginamic.springdemo.exceptions.InvalidException;
+import fr.diginamic.springdemo.exceptions.NotFoundException;
+import fr.diginamic.springdemo.exceptions.PayloadTooLargeException;
+import fr.diginamic.springdemo.utils.ImportOptions;
+import fr.diginamic.springdemo.utils.ImportReport;
+import fr.diginamic.springdemo.utils.ImportUtils;
+import fr.diginamic.springdemo.utils.LimitedInputStream;
+import fr.diginamic.springdemo.utils.TopCities;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Service running census imports uploaded to the API
+ * The upload is parsed while it is received, keeping only the selected cities in memory, then written asynchronously.
+ * Imports run one at a time: an upload is only read once the imports before it are written.
+ * @see ImportUtils
+ */
+@Service
+public class ImportJobService {
+
+    /**
+     * The ImportUtils
+     */
+    @Autowired
+    private ImportUtils importUtils;
+
+    /**
+     * The maximum number of cities selected by an upload, bounding the cities held in memory
+     */
+    @Value("${import.upload.max-limit:50000}")
+    private int maxLimit;
+
+    /**
+     * The maximum size of an upload
+     */
+    @Value("${import.upload.max-bytes:50MB}")
+    private DataSize maxBytes;
+
+    /**
+     * The time the report of a finished import is kept
+     */
+    @Value("${import.jobs.retention:1h}")
+    private Duration retention;
+
+    /**
+     * The import reports by job id
+     */
+    private final Map<Long, ImportReport> jobs = new ConcurrentHashMap<>();
+
+    /**
+     * The last job id
+     */
+    private final AtomicLong lastId = new AtomicLong();
+
+    /**
+     * The executor writing the imports
+     */
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    /**
+     * Start an import from a census CSV stream
+     * The stream is parsed as it is received, on the import executor, so the caller returns once the whole stream
+     * is read: the progress of the parse, then of the write, can be followed from the job meanwhile.
+     * @param in the CSV content, header line included, read until the parse is done
+     * @param options the import options
+     * @return the import job, writing the selected cities
+     * @throws InvalidException if the limit is out of bounds
+     * @throws PayloadTooLargeException if the stream is larger than the maximum upload size
+     * @throws IOException if the stream cannot be read
+     */
+    public ImportJobDTO submit(InputStream in, ImportOptions options) throws InvalidException, IOException {
+        if (options.getLimit() < 1 || options.getLimit() > maxLimit) {
+            throw new InvalidException("The limit must be between 1 and " + maxLimit);
+        }
+        evictFinishedJobs();
+
+        long id = lastId.incrementAndGet();
+        ImportReport report = new ImportReport();
+        jobs.put(id, report);
+        CompletableFuture<Void> parsed = new CompletableFuture<>();
+        executor.submit(() -> {
+            TopCities selection;
+            try {
+                long stageStart = System.nanoTime();
+                selection = importUtils.select(new LimitedInputStream(in, maxBytes.toBytes()), ImportUtils.CENSUS_HEADERS, options.getLimit(), report);
+                report.stage("parse", stageStart);
+            } catch (Exception e) {
+                report.fail(e);
+                parsed.completeExceptionally(e);
+                return;
+            }
+            parsed.complete(null);
+            try {
+                importUtils.write("upload-" + id, selection, options, report);
+            } catch (Exception e) {
+                report.fail(e);
+            }
+        });
+
+        try {
+            parsed.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+        return new ImportJobDTO(id, report);
+    }
+
+    /**
+     * Get the progress of an import
+     * @param id the import job id
+     * @return the import job
+     * @throws NotFoundException if the import is not found
+     */
+    public ImportJobDTO getJob(long id) throws NotFoundException {
+        evictFinishedJobs();
+        ImportReport report = jobs.get(id);
+        if (report == null) {
+            throw new NotFoundException("Import with id " + id + " not found");
+        }
+        return new ImportJobDTO(id, report);
+    }
+
+    /**
+     * Forget the imports finished for longer than the retention time
+     */
+    private void evictFinishedJobs() {
+        jobs.values().removeIf(report -> report.isFinishedSince(retention));
+    }
+
+    /**
+     * Stop the executor when the application shuts down
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,29 @@
+package fr.diginamic.springdemo.services;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Local department names, for tests and benchmarks that must not call the geo API
+ * (department.names.remote=stub)
+ */
+@Component
+@ConditionalOnProperty(name = "department.names.remote", havingValue = "stub")
+public class StubDepartmentNameClient implements DepartmentNameClient {
+
+    @Override
+    public String fetchName(String code) {
+        return "Département " + code;
+    }
+
+    /**
+     * The stub has no list of departments, names are made up code by code
+     * @return an empty map
+     */
+    @Override
+    public Map<String, String> fetchAll() {
+        return Map.of();
+    }
+}
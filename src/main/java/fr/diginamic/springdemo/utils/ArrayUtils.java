@@ -0,0 +1,89 @@
+package fr.diginamic.springdemo.utils;
+
+import java.util.Arrays;
+
+/**
+ * Copy-on-write helpers for the parallel arrays of the in-memory indexes
+ * @see CitySnapshot
+ * @see DepartmentRankings
+ * @see TrigramIndex
+ */
+public final class ArrayUtils {
+
+    /**
+     * Utility class
+     */
+    private ArrayUtils() {
+    }
+
+    /**
+     * Copy an array with a value inserted
+     * @param array the array
+     * @param position the position of the value
+     * @param value the value
+     * @return the new array
+     */
+    public static int[] insert(int[] array, int position, int value) {
+        int[] copy = new int[array.length + 1];
+        System.arraycopy(array, 0, copy, 0, position);
+        copy[position] = value;
+        System.arraycopy(array, position, copy, position + 1, array.length - position);
+        return copy;
+    }
+
+    /**
+     * Copy an array with a value inserted
+     * @param array the array
+     * @param position the position of the value
+     * @param value the value
+     * @return the new array
+     * @param <T> the type of the values
+     */
+    public static <T> T[] insert(T[] array, int position, T value) {
+        T[] copy = Arrays.copyOf(array, array.length + 1);
+        System.arraycopy(array, position, copy, position + 1, array.length - position);
+        copy[position] = value;
+        return copy;
+    }
+
+    /**
+     * Copy an array with a value removed
+     * @param array the array
+     * @param position the position of the value
+     * @return the new array
+     */
+    public static int[] remove(int[] array, int position) {
+        int[] copy = new int[array.length - 1];
+        System.arraycopy(array, 0, copy, 0, position);
+        System.arraycopy(array, position + 1, copy, position, array.length - position - 1);
+        return copy;
+    }
+
+    /**
+     * Copy an array with a value removed
+     * @param array the array
+     * @param position the position of the value
+     * @return the new array
+     * @param <T> the type of the values
+     */
+    public static <T> T[] remove(T[] array, int position) {
+        T[] copy = Arrays.copyOf(array, array.length - 1);
+        System.arraycopy(array, position + 1, copy, position, array.length - position - 1);
+        return copy;
+    }
+
+    /**
+     * Find the position of a value
+     * @param array the array
+     * @param value the value
+     * @return the first position of the value, or -1 if it is not in the array
+     */
+    public static int indexOf(int[] array, int value) {
+        for (int i = 0; i < array.length; i++) {
+            if (array[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
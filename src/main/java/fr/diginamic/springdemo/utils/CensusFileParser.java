@@ -0,0 +1,170 @@
+package fr.diginamic.springdemo.utils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Parallel parser for the census CSV file.
+ * The file is split into line-aligned chunks, and each chunk is memory-mapped and parsed on a fork-join pool.
+ * Chunks are mapped one by one, so the file may be larger than a single mapping (2 GB).
+ * @see ImportUtils
+ */
+public class CensusFileParser {
+
+    /**
+     * The number of chunks created per thread, so that faster threads can pick up more work
+     */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    /**
+     * The maximum size of a chunk, well below the 2 GB limit of a mapping so that the end of its last line fits too
+     */
+    private static final long MAX_CHUNK_SIZE = 256L * 1024 * 1024;
+
+    /**
+     * The size of the buffer used to look for line boundaries
+     */
+    private static final int SCAN_BUFFER_SIZE = 8 * 1024;
+
+    /**
+     * The headers of the CSV file
+     */
+    private final String[] headers;
+
+    /**
+     * Constructor
+     * @param headers the headers of the CSV file
+     */
+    public CensusFileParser(String[] headers) {
+        this.headers = headers;
+    }
+
+    /**
+     * Parse the whole file, the header line excepted, and keep the most populated cities.
+     * Each chunk selects its own top cities, then the selections are merged.
+     * @param path the path to the CSV file
+     * @param threads the number of parsing threads
+     * @param limit the number of cities to keep
+     * @param report the import report, counting parsed and rejected rows
+     * @return the most populated cities, with a transient department holding only its code
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if the number of threads is not positive
+     * @see TopCities
+     */
+    public TopCities parse(Path path, int threads, int limit, ImportReport report) throws IOException {
+        if (threads < 1) {
+            throw new IllegalArgumentException("The number of parsing threads must be positive");
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long start = nextLine(channel, 0);
+            List<long[]> bounds = split(channel, start, threads * CHUNKS_PER_THREAD);
+
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            List<ForkJoinTask<TopCities>> tasks = new ArrayList<>(bounds.size());
+            for (long[] bound : bounds) {
+                tasks.add(pool.submit(() -> parseChunk(channel, bound[0], bound[1], limit, report)));
+            }
+            TopCities cities = new TopCities(limit);
+            try {
+                for (ForkJoinTask<TopCities> task : tasks) {
+                    cities.addAll(task.join());
+                }
+            } catch (RuntimeException e) {
+                // The chunks still queued must not map the file once it is closed
+                tasks.forEach(task -> task.cancel(false));
+                if (e instanceof UncheckedIOException unchecked) {
+                    throw unchecked.getCause();
+                }
+                throw e;
+            } finally {
+                pool.shutdown();
+            }
+            return cities;
+        }
+    }
+
+    /**
+     * Split a file region into chunks ending on a line boundary
+     * @param channel the file
+     * @param start the start of the region
+     * @param count the wanted number of chunks
+     * @return the chunks as [from, to) pairs
+     * @throws IOException if the file cannot be read
+     */
+    private static List<long[]> split(FileChannel channel, long start, int count) throws IOException {
+        long end = channel.size();
+        long step = Math.min(MAX_CHUNK_SIZE, Math.max(1, (end - start) / Math.max(1, count)));
+        List<long[]> bounds = new ArrayList<>();
+        long from = start;
+        while (from < end) {
+            long to = nextLine(channel, Math.min(end, from + step));
+            bounds.add(new long[]{from, to});
+            from = to;
+        }
+        return bounds;
+    }
+
+    /**
+     * Find the start of the line following a position
+     * @param channel the file
+     * @param position the position to start from
+     * @return the position just after the next line feed, or the file size
+     * @throws IOException if the file cannot be read
+     */
+    private static long nextLine(FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        int read;
+        while ((read = channel.read(buffer.clear(), position)) > 0) {
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return channel.size();
+    }
+
+    /**
+     * Map a chunk and parse its lines, straight from the mapped bytes
+     * @param channel the file
+     * @param from the start of the chunk (start of a line)
+     * @param to the end of the chunk (start of a line)
+     * @param limit the number of cities to keep
+     * @param report the import report
+     * @return the most populated cities of the chunk
+     * @throws UncheckedIOException if the chunk cannot be mapped
+     * @see CensusRowReader
+     */
+    private TopCities parseChunk(FileChannel channel, long from, long to, int limit, ImportReport report) {
+        MappedByteBuffer buffer;
+        try {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        CensusRowReader reader = new CensusRowReader(headers);
+        TopCities cities = new TopCities(limit);
+        int end = buffer.limit();
+        int lineStart = 0;
+        for (int i = 0; i < end; i++) {
+            if (buffer.get(i) == '\n') {
+                reader.readLine(buffer, lineStart, i, cities::offer, report);
+                lineStart = i + 1;
+            }
+        }
+        if (lineStart < end) {
+            reader.readLine(buffer, lineStart, end, cities::offer, report);
+        }
+        return cities;
+    }
+}
@@ -0,0 +1,268 @@
+package fr.diginamic.springdemo.utils;
+
+import fr.diginamic.springdemo.entities.City;
+import fr.diginamic.springdemo.entities.Department;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Byte-level reader for the rows of the census CSV file (semicolon-delimited UTF-8, no quoting).
+ * Fields are decoded straight from the buffer: codes are looked up in a shared table, populations
+ * are accumulated digit by digit (skipping the group separators), and the commune name is the only String created per row.
+ * An instance keeps a scratch buffer and must not be shared between threads.
+ * @see CensusFileParser
+ */
+public class CensusRowReader {
+
+    /**
+     * The code strings shared by all rows, keyed by their packed bytes
+     */
+    private static final Map<Integer, String> CODES = new ConcurrentHashMap<>();
+
+    /**
+     * The size of the buffer used to read streams
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The index of the department code column
+     */
+    private final int departmentColumn;
+
+    /**
+     * The index of the commune code column
+     */
+    private final int communeColumn;
+
+    /**
+     * The index of the commune name column
+     */
+    private final int nameColumn;
+
+    /**
+     * The index of the total population column
+     */
+    private final int populationColumn;
+
+    /**
+     * The index of the last column read
+     */
+    private final int lastColumn;
+
+    /**
+     * Scratch buffer the commune name is copied into before being decoded
+     */
+    private byte[] scratch = new byte[128];
+
+    /**
+     * Constructor
+     * @param headers the headers of the CSV file
+     */
+    public CensusRowReader(String[] headers) {
+        List<String> columns = Arrays.asList(headers);
+        this.departmentColumn = columns.indexOf("codeDepartment");
+        this.communeColumn = columns.indexOf("codeCommune");
+        this.nameColumn = columns.indexOf("nameCommune");
+        this.populationColumn = columns.indexOf("populationTotale");
+        if (departmentColumn < 0 || communeColumn < 0 || nameColumn < 0 || populationColumn < 0) {
+            throw new IllegalArgumentException("Headers must contain codeDepartment, codeCommune, nameCommune and populationTotale");
+        }
+        this.lastColumn = Math.max(Math.max(departmentColumn, communeColumn), Math.max(nameColumn, populationColumn));
+    }
+
+    /**
+     * Read every row of a stream, the header line excepted
+     * @param in the CSV content, header line included
+     * @param consumer the consumer of the parsed cities
+     * @param report the import report, counting parsed and rejected rows
+     * @throws IOException if the stream cannot be read
+     */
+    public void readAll(InputStream in, Consumer<City> consumer, ImportReport report) throws IOException {
+        byte[] bytes = new byte[BUFFER_SIZE];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        int length = 0;
+        boolean header = true;
+        int read;
+        while ((read = in.read(bytes, length, bytes.length - length)) != -1 || length > 0) {
+            length += Math.max(read, 0);
+            int lineStart = 0;
+            for (int i = 0; i < length; i++) {
+                if (bytes[i] == '\n') {
+                    if (!header) {
+                        readLine(buffer, lineStart, i, consumer, report);
+                    }
+                    header = false;
+                    lineStart = i + 1;
+                }
+            }
+            if (read == -1) {
+                // Last line without a line feed
+                if (!header && lineStart < length) {
+                    readLine(buffer, lineStart, length, consumer, report);
+                }
+                break;
+            }
+            // Keep the incomplete line at the start of the buffer, growing it for very long lines
+            length -= lineStart;
+            System.arraycopy(bytes, lineStart, bytes, 0, length);
+            if (length == bytes.length) {
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+                buffer = ByteBuffer.wrap(bytes);
+            }
+        }
+    }
+
+    /**
+     * Read one line, counting it as parsed or rejected
+     * @param buffer the buffer
+     * @param from the start of the line
+     * @param to the end of the line, line feed excluded
+     * @param consumer the consumer of the parsed city
+     * @param report the import report
+     */
+    public void readLine(ByteBuffer buffer, int from, int to, Consumer<City> consumer, ImportReport report) {
+        if (to > from && buffer.get(to - 1) == '\r') {
+            to--;
+        }
+        if (to <= from) {
+            return;
+        }
+        City city = parse(buffer, from, to);
+        if (city == null) {
+            report.rejected();
+        } else {
+            consumer.accept(city);
+            report.parsed();
+        }
+    }
+
+    /**
+     * Parse one line
+     * @param buffer the buffer
+     * @param from the start of the line
+     * @param to the end of the line, line feed excluded
+     * @return the city, with a transient department holding only its code, or null if the line is malformed
+     */
+    public City parse(ByteBuffer buffer, int from, int to) {
+        String departmentCode = null;
+        String communeCode = null;
+        String name = null;
+        int population = -1;
+
+        int column = 0;
+        int fieldStart = from;
+        for (int i = from; i <= to && column <= lastColumn; i++) {
+            if (i < to && buffer.get(i) != ';') {
+                continue;
+            }
+            if (column == departmentColumn) {
+                departmentCode = code(buffer, fieldStart, i);
+            } else if (column == communeColumn) {
+                communeCode = code(buffer, fieldStart, i);
+            } else if (column == nameColumn) {
+                name = text(buffer, fieldStart, i);
+            } else if (column == populationColumn) {
+                population = number(buffer, fieldStart, i);
+            }
+            column++;
+            fieldStart = i + 1;
+        }
+
+        if (departmentCode == null || communeCode == null || name == null || population < 0) {
+            return null;
+        }
+        City city = new City();
+        city.setName(name);
+        city.setCommuneCode(communeCode);
+        city.setPopulation(population);
+        // Temporarily store the department code in the city object for later processing
+        city.setDepartment(new Department(departmentCode));
+        return city;
+    }
+
+    /**
+     * Decode a short ASCII code, sharing one String instance per distinct code
+     * @param buffer the buffer
+     * @param from the start of the field
+     * @param to the end of the field
+     * @return the code, or null if the field is empty
+     */
+    private String code(ByteBuffer buffer, int from, int to) {
+        while (from < to && buffer.get(from) == ' ') from++;
+        while (to > from && buffer.get(to - 1) == ' ') to--;
+        int length = to - from;
+        if (length == 0) {
+            return null;
+        }
+        if (length > 3) {
+            return text(buffer, from, to);
+        }
+        int key = length << 24;
+        for (int i = 0; i < length; i++) {
+            key |= (buffer.get(from + i) & 0xFF) << (8 * (2 - i));
+        }
+        String code = CODES.get(key);
+        if (code == null) {
+            String decoded = text(buffer, from, to);
+            code = CODES.computeIfAbsent(key, k -> decoded);
+        }
+        return code;
+    }
+
+    /**
+     * Decode a trimmed UTF-8 field
+     * @param buffer the buffer
+     * @param from the start of the field
+     * @param to the end of the field
+     * @return the text, or null if the field is empty
+     */
+    private String text(ByteBuffer buffer, int from, int to) {
+        while (from < to && buffer.get(from) == ' ') from++;
+        while (to > from && buffer.get(to - 1) == ' ') to--;
+        int length = to - from;
+        if (length == 0) {
+            return null;
+        }
+        if (scratch.length < length) {
+            scratch = new byte[length];
+        }
+        buffer.get(from, scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Decode a positive number written with space-separated digit groups (e.g. "14 518")
+     * @param buffer the buffer
+     * @param from the start of the field
+     * @param to the end of the field
+     * @return the number, or -1 if the field is empty or contains other characters
+     */
+    private static int number(ByteBuffer buffer, int from, int to) {
+        long value = 0;
+        boolean digits = false;
+        for (int i = from; i < to; i++) {
+            int b = buffer.get(i) & 0xFF;
+            if (b >= '0' && b <= '9') {
+                value = value * 10 + (b - '0');
+                if (value > Integer.MAX_VALUE) {
+                    return -1;
+                }
+                digits = true;
+            } else if (b == 0xC2 && i + 1 < to && (buffer.get(i + 1) & 0xFF) == 0xA0) {
+                // Non-breaking space used as a group separator
+                i++;
+            } else if (b != ' ') {
+                return -1;
+            }
+        }
+        return digits ? (int) value : -1;
+    }
+}
@@ -0,0 +1,147 @@
+package fr.diginamic.springdemo.utils;
+
+import fr.diginamic.springdemo.exceptions.CircuitOpenException;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Circuit breaker guarding the calls to a remote service.
+ * After a number of consecutive failures the circuit opens and calls fail fast, without reaching the remote.
+ * Once the open duration has elapsed, a single trial call is let through: its success closes the circuit,
+ * its failure opens it again.
+ */
+public class CircuitBreaker {
+
+    /**
+     * The state of the circuit
+     */
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * The name of the guarded remote
+     */
+    private final String name;
+
+    /**
+     * The number of consecutive failures opening the circuit
+     */
+    private final int failureThreshold;
+
+    /**
+     * The time the circuit stays open before a trial call
+     */
+    private final Duration openDuration;
+
+    /**
+     * The state of the circuit
+     */
+    private State state = State.CLOSED;
+
+    /**
+     * The number of consecutive failures
+     */
+    private int failures;
+
+    /**
+     * The time the circuit opened, from {@link System#nanoTime()}
+     */
+    private long openedAt;
+
+    /**
+     * Whether the trial call of a half-open circuit is in flight
+     */
+    private boolean trialInFlight;
+
+    /**
+     * Constructor
+     * @param name the name of the guarded remote
+     * @param failureThreshold the number of consecutive failures opening the circuit
+     * @param openDuration the time the circuit stays open before a trial call
+     */
+    public CircuitBreaker(String name, int failureThreshold, Duration openDuration) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+    }
+
+    /**
+     * Call the remote through the circuit
+     * @param call the remote call
+     * @return the result of the call
+     * @param <T> the type of the result
+     * @throws CircuitOpenException if the circuit is open
+     */
+    public <T> T call(Supplier<T> call) {
+        acquire();
+        T result;
+        try {
+            result = call.get();
+        } catch (Throwable e) {
+            // Errors count as failures too, otherwise a failed trial would leave the circuit half-open forever
+            onFailure();
+            throw e;
+        }
+        onSuccess();
+        return result;
+    }
+
+    /**
+     * Let a call through, or refuse it if the circuit is open
+     * @throws CircuitOpenException if the circuit is open
+     */
+    private synchronized void acquire() {
+        if (state == State.OPEN && System.nanoTime() - openedAt >= openDuration.toNanos()) {
+            state = State.HALF_OPEN;
+        }
+        if (state == State.OPEN || (state == State.HALF_OPEN && trialInFlight)) {
+            throw new CircuitOpenException("The circuit to " + name + " is open, calls are refused for up to " + openDuration);
+        }
+        if (state == State.HALF_OPEN) {
+            trialInFlight = true;
+        }
+    }
+
+    /**
+     * Record a successful call, closing the circuit
+     */
+    private synchronized void onSuccess() {
+        state = State.CLOSED;
+        failures = 0;
+        trialInFlight = false;
+    }
+
+    /**
+     * Record a failed call, opening the circuit after too many consecutive failures or a failed trial
+     */
+    private synchronized void onFailure() {
+        failures++;
+        if (state == State.HALF_OPEN || failures >= failureThreshold) {
+            if (state != State.OPEN) {
+                System.out.println("Opening the circuit to " + name + " after " + failures + " consecutive failures");
+            }
+            state = State.OPEN;
+            openedAt = System.nanoTime();
+            trialInFlight = false;
+        }
+    }
+
+    /**
+     * Get the state of the circuit
+     * @return a State
+     */
+    public synchronized State getState() {
+        return state;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "{" +
+                "name='" + name + '\'' +
+                ", state=" + state +
+                ", failures=" + failures +
+                '}';
+    }
+}
@@ -0,0 +1,185 @@
+package fr.diginamic.springdemo.utils;
+
+import fr.diginamic.springdemo.entities.dtos.CityDTO;
+import fr.diginamic.springdemo.entities.dtos.CityRow;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, columnar snapshot of the cities, sorted by population.
+ * Each city is a position in parallel arrays (population, id, department index, name), so a population range
+ * is two binary searches followed by a slice of the arrays.
+ * Writes never modify a snapshot: they produce a new one, which readers pick up atomically.
+ * @see fr.diginamic.springdemo.services.CitySnapshotService
+ */
+public final class CitySnapshot {
+
+    /**
+     * The populations, in ascending order
+     */
+    private final int[] populations;
+
+    /**
+     * The city ids, in the order of the populations
+     */
+    private final int[] ids;
+
+    /**
+     * The index of the department code of each city, in the order of the populations
+     */
+    private final int[] departments;
+
+    /**
+     * The city names, in the order of the populations
+     */
+    private final String[] names;
+
+    /**
+     * The distinct department codes
+     */
+    private final String[] departmentCodes;
+
+    /**
+     * Constructor
+     * @param populations the populations, in ascending order
+     * @param ids the city ids
+     * @param departments the department indexes
+     * @param names the city names
+     * @param departmentCodes the distinct department codes
+     */
+    private CitySnapshot(int[] populations, int[] ids, int[] departments, String[] names, String[] departmentCodes) {
+        this.populations = populations;
+        this.ids = ids;
+        this.departments = departments;
+        this.names = names;
+        this.departmentCodes = departmentCodes;
+    }
+
+    /**
+     * Build a snapshot
+     * @param rows the cities
+     * @return the snapshot
+     */
+    public static CitySnapshot of(List<CityRow> rows) {
+        List<CityRow> sorted = new ArrayList<>(rows);
+        sorted.sort(Comparator.comparingInt(CityRow::population).thenComparingInt(CityRow::id));
+
+        int size = sorted.size();
+        int[] populations = new int[size];
+        int[] ids = new int[size];
+        int[] departments = new int[size];
+        String[] names = new String[size];
+        Map<String, Integer> departmentIndexes = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            CityRow row = sorted.get(i);
+            populations[i] = row.population();
+            ids[i] = row.id();
+            departments[i] = departmentIndexes.computeIfAbsent(row.departmentCode(), code -> departmentIndexes.size());
+            names[i] = row.name();
+        }
+        String[] departmentCodes = new String[departmentIndexes.size()];
+        departmentIndexes.forEach((code, index) -> departmentCodes[index] = code);
+        return new CitySnapshot(populations, ids, departments, names, departmentCodes);
+    }
+
+    /**
+     * Get the cities within a population range
+     * @param min the minimum population, inclusive
+     * @param max the maximum population, inclusive
+     * @return the cities, by population in ascending order
+     */
+    public List<CityDTO> range(int min, int max) {
+        if (min > max) {
+            return List.of();
+        }
+        int from = lowerBound(min);
+        int to = max == Integer.MAX_VALUE ? populations.length : lowerBound(max + 1);
+        List<CityDTO> cities = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            cities.add(new CityDTO(names[i], populations[i], departmentCodes[departments[i]]));
+        }
+        return cities;
+    }
+
+    /**
+     * Get the cities with a population greater than a given one
+     * @param population the population, exclusive
+     * @return the cities, by population in ascending order
+     */
+    public List<CityDTO> greaterThan(int population) {
+        return population == Integer.MAX_VALUE ? List.of() : range(population + 1, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Get a snapshot without a city
+     * @param id the city id
+     * @return a new snapshot, or this one if the city is not in it
+     */
+    public CitySnapshot without(int id) {
+        int position = ArrayUtils.indexOf(ids, id);
+        if (position < 0) {
+            return this;
+        }
+        return new CitySnapshot(ArrayUtils.remove(populations, position), ArrayUtils.remove(ids, position), ArrayUtils.remove(departments, position),
+                ArrayUtils.remove(names, position), departmentCodes);
+    }
+
+    /**
+     * Get a snapshot with a city added, or replaced if its id is already in the snapshot
+     * @param row the city
+     * @return a new snapshot
+     */
+    public CitySnapshot with(CityRow row) {
+        CitySnapshot base = without(row.id());
+        String[] codes = base.departmentCodes;
+        int department = Arrays.asList(codes).indexOf(row.departmentCode());
+        if (department < 0) {
+            department = codes.length;
+            codes = Arrays.copyOf(codes, codes.length + 1);
+            codes[department] = row.departmentCode();
+        }
+        int position = base.lowerBound(row.population());
+        return new CitySnapshot(ArrayUtils.insert(base.populations, position, row.population()), ArrayUtils.insert(base.ids, position, row.id()),
+                ArrayUtils.insert(base.departments, position, department), ArrayUtils.insert(base.names, position, row.name()), codes);
+    }
+
+    /**
+     * Get the number of cities in the snapshot
+     * @return an integer
+     */
+    public int size() {
+        return populations.length;
+    }
+
+    /**
+     * Find the first position with a population greater than or equal to a given one
+     * @param population the population
+     * @return the position, or the size of the snapshot if every population is lower
+     */
+    private int lowerBound(int population) {
+        int low = 0;
+        int high = populations.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (populations[middle] < population) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    public String toString() {
+        return "{" +
+                "cities=" + populations.length +
+                ", departments=" + departmentCodes.length +
+                '}';
+    }
+}
@@ -0,0 +1,185 @@
+package fr.diginamic.springdemo.utils;
+
+import fr.diginamic.springdemo.entities.dtos.CityDTO;
+import fr.diginamic.springdemo.entities.dtos.CityRank;
+import fr.diginamic.springdemo.entities.dtos.CityRow;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable rankings of the cities of each department by population.
+ * Each department holds parallel arrays (population, id, name) sorted by population in descending order,
+ * so its top N cities are a slice. A city is found by a linear scan of the ids of its department
+ * (of every department when it is removed), then its rank among equal populations by a binary search.
+ * Writes never modify the rankings: they produce new ones, only the departments of the written city being copied.
+ * @see fr.diginamic.springdemo.services.DepartmentRankingService
+ */
+public final class DepartmentRankings {
+
+    /**
+     * The cities of a department, by population in descending order
+     * @param populations the populations
+     * @param ids the city ids
+     * @param names the city names
+     */
+    private record Ranking(int[] populations, int[] ids, String[] names) {
+    }
+
+    /**
+     * The rankings, by department code
+     */
+    private final Map<String, Ranking> rankings;
+
+    /**
+     * Constructor
+     * @param rankings the rankings, by department code
+     */
+    private DepartmentRankings(Map<String, Ranking> rankings) {
+        this.rankings = rankings;
+    }
+
+    /**
+     * Build the rankings
+     * @param rows the cities
+     * @return the rankings
+     */
+    public static DepartmentRankings of(Collection<CityRow> rows) {
+        Map<String, List<CityRow>> byDepartment = new HashMap<>();
+        for (CityRow row : rows) {
+            byDepartment.computeIfAbsent(row.departmentCode(), code -> new ArrayList<>()).add(row);
+        }
+        Map<String, Ranking> rankings = new HashMap<>(byDepartment.size() * 2);
+        byDepartment.forEach((code, cities) -> {
+            cities.sort(Comparator.comparingInt(CityRow::population).reversed().thenComparingInt(CityRow::id));
+            int size = cities.size();
+            int[] populations = new int[size];
+            int[] ids = new int[size];
+            String[] names = new String[size];
+            for (int i = 0; i < size; i++) {
+                CityRow city = cities.get(i);
+                populations[i] = city.population();
+                ids[i] = city.id();
+                names[i] = city.name();
+            }
+            rankings.put(code, new Ranking(populations, ids, names));
+        });
+        return new DepartmentRankings(rankings);
+    }
+
+    /**
+     * Get the most populated cities of a department
+     * @param code the department code
+     * @param count the number of cities
+     * @return the cities, most populated first, empty if the department has no city
+     */
+    public List<CityDTO> top(String code, int count) {
+        Ranking ranking = rankings.get(code);
+        if (ranking == null || count < 1) {
+            return List.of();
+        }
+        int size = Math.min(count, ranking.ids().length);
+        List<CityDTO> cities = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            cities.add(new CityDTO(ranking.names()[i], ranking.populations()[i], code));
+        }
+        return cities;
+    }
+
+    /**
+     * Get the rank of a city in its department, scanning the ids of the department
+     * @param code the department code
+     * @param id the city id
+     * @return the rank, or null if the city is not in the department
+     */
+    public CityRank rank(String code, int id) {
+        Ranking ranking = rankings.get(code);
+        if (ranking == null) {
+            return null;
+        }
+        int position = ArrayUtils.indexOf(ranking.ids(), id);
+        if (position < 0) {
+            return null;
+        }
+        int population = ranking.populations()[position];
+        // Cities with the same population share the rank of the first of them
+        int rank = firstAtMost(ranking.populations(), population) + 1;
+        return new CityRank(id, ranking.names()[position], code, population, rank, ranking.ids().length);
+    }
+
+    /**
+     * Get rankings with a city added, or replaced if its id is already ranked
+     * @param row the city
+     * @return new rankings
+     */
+    public DepartmentRankings with(CityRow row) {
+        Map<String, Ranking> updated = new HashMap<>(without(row.id()).rankings);
+        Ranking ranking = updated.getOrDefault(row.departmentCode(), new Ranking(new int[0], new int[0], new String[0]));
+        int position = firstAtMost(ranking.populations(), row.population());
+        updated.put(row.departmentCode(), new Ranking(ArrayUtils.insert(ranking.populations(), position, row.population()),
+                ArrayUtils.insert(ranking.ids(), position, row.id()), ArrayUtils.insert(ranking.names(), position, row.name())));
+        return new DepartmentRankings(updated);
+    }
+
+    /**
+     * Get rankings without a city, scanning the ids of every department until it is found
+     * @param id the city id
+     * @return new rankings, or these ones if the city is not ranked
+     */
+    public DepartmentRankings without(int id) {
+        for (Map.Entry<String, Ranking> entry : rankings.entrySet()) {
+            Ranking ranking = entry.getValue();
+            int position = ArrayUtils.indexOf(ranking.ids(), id);
+            if (position >= 0) {
+                Map<String, Ranking> updated = new HashMap<>(rankings);
+                if (ranking.ids().length == 1) {
+                    updated.remove(entry.getKey());
+                } else {
+                    updated.put(entry.getKey(), new Ranking(ArrayUtils.remove(ranking.populations(), position),
+                            ArrayUtils.remove(ranking.ids(), position), ArrayUtils.remove(ranking.names(), position)));
+                }
+                return new DepartmentRankings(updated);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Get the number of ranked departments
+     * @return an integer
+     */
+    public int size() {
+        return rankings.size();
+    }
+
+    /**
+     * Find the first position with a population lower than or equal to a given one
+     * @param populations the populations, in descending order
+     * @param population the population
+     * @return the position, or the length of the array if every population is greater
+     */
+    private static int firstAtMost(int[] populations, int population) {
+        int low = 0;
+        int high = populations.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (populations[middle] > population) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    public String toString() {
+        return "{" +
+                "departments=" + rankings.size() +
+                '}';
+    }
+}
@@ -0,0 +1,201 @@
+package fr.diginamic.springdemo.utils;
+
+/**
+ * Options of a census import
+ * @see ImportUtils
+ */
+public class ImportOptions {
+
+    /**
+     * The engine writing the cities
+     */
+    public enum Engine {
+        /**
+         * Chunked JPA persistence, supporting checkpoints and incremental imports
+         */
+        JPA,
+        /**
+         * Plain JDBC batches for the initial load of an empty database
+         * @see NativeCityLoader
+         */
+        NATIVE
+    }
+
+    /**
+     * The maximum number of cities to import
+     */
+    private int limit = Integer.MAX_VALUE;
+
+    /**
+     * The number of cities written per transaction
+     */
+    private int chunkSize = 1000;
+
+    /**
+     * The number of threads used to parse the file (1 means sequential parsing)
+     */
+    private int threads = 1;
+
+    /**
+     * Whether only new or changed cities are written, keyed on department and commune codes.
+     * This requires a schema kept between runs (spring.jpa.hibernate.ddl-auto=update).
+     */
+    private boolean incremental;
+
+    /**
+     * Whether an incremental import deletes the stored cities missing from the file.
+     * The limit must cover every city of the file, otherwise the import fails before writing anything.
+     */
+    private boolean deleteVanished;
+
+    /**
+     * Whether a full import resumes from the checkpoint left by a previous, interrupted run
+     */
+    private boolean resume;
+
+    /**
+     * The engine writing the cities
+     */
+    private Engine engine = Engine.JPA;
+
+    /**
+     * Default constructor
+     */
+    public ImportOptions() {
+    }
+
+    /**
+     * Constructor
+     * @param limit the maximum number of cities to import
+     * @param chunkSize the number of cities written per transaction
+     */
+    public ImportOptions(int limit, int chunkSize) {
+        this.limit = limit;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Get the maximum number of cities to import
+     * @return an integer
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Set the maximum number of cities to import
+     * @param limit the maximum number of cities
+     */
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * Get the number of cities written per transaction
+     * @return an integer
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Set the number of cities written per transaction
+     * @param chunkSize the chunk size
+     */
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Get the number of parsing threads
+     * @return an integer
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Set the number of parsing threads
+     * @param threads the number of threads
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Check if the import is incremental
+     * @return a boolean
+     */
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * Set whether the import is incremental
+     * @param incremental true to upsert only new or changed cities
+     */
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    /**
+     * Check if an incremental import deletes vanished cities
+     * @return a boolean
+     */
+    public boolean isDeleteVanished() {
+        return deleteVanished;
+    }
+
+    /**
+     * Set whether an incremental import deletes vanished cities
+     * @param deleteVanished true to delete the cities missing from the import
+     */
+    public void setDeleteVanished(boolean deleteVanished) {
+        this.deleteVanished = deleteVanished;
+    }
+
+    /**
+     * Check if the import resumes from its last checkpoint
+     * @return a boolean
+     */
+    public boolean isResume() {
+        return resume;
+    }
+
+    /**
+     * Set whether the import resumes from its last checkpoint
+     * @param resume true to skip the chunks already committed
+     */
+    public void setResume(boolean resume) {
+        this.resume = resume;
+    }
+
+    /**
+     * Get the engine writing the cities
+     * @return an Engine
+     */
+    public Engine getEngine() {
+        return engine;
+    }
+
+    /**
+     * Set the engine writing the cities
+     * @param engine the engine
+     */
+    public void setEngine(Engine engine) {
+        this.engine = engine;
+    }
+
+    @Override
+    public String toString() {
+        return "{" +
+                "limit=" + limit +
+                ", chunkSize=" + chunkSize +
+                ", threads=" + threads +
+                ", incremental=" + incremental +
+                ", deleteVanished=" + deleteVanished +
+                ", resume=" + resume +
+                ", engine=" + engine +
+                '}';
+    }
+}
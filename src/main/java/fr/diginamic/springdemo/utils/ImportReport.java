@@ -0,0 +1,297 @@
+package fr.diginamic.springdemo.utils;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Summary of a census import run.
+ * Counters are updated while the import runs, so the report can be read concurrently to follow its progress.
+ * @see ImportUtils
+ */
+public class ImportReport {
+
+    /**
+     * The state of an import
+     */
+    public enum Status {
+        RUNNING, COMPLETED, FAILED
+    }
+
+    /**
+     * The number of rows parsed from the file
+     */
+    private final AtomicLong parsed = new AtomicLong();
+
+    /**
+     * The number of rows rejected by the parser
+     */
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * The number of cities written to the database
+     */
+    private final AtomicLong written = new AtomicLong();
+
+    /**
+     * The number of existing cities updated by an incremental import
+     */
+    private final AtomicLong updated = new AtomicLong();
+
+    /**
+     * The number of existing cities left untouched by an incremental import
+     */
+    private final AtomicLong unchanged = new AtomicLong();
+
+    /**
+     * The number of vanished cities deleted by an incremental import
+     */
+    private final AtomicLong deleted = new AtomicLong();
+
+    /**
+     * The number of chunks (transactions) committed
+     */
+    private final AtomicInteger chunks = new AtomicInteger();
+
+    /**
+     * The number of cities skipped because they were committed by a previous run
+     */
+    private volatile long resumedFrom;
+
+    /**
+     * The duration of each stage of the import, in execution order
+     */
+    private final Map<String, Duration> stages = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    /**
+     * The start time of the import, in nanoseconds
+     */
+    private final long startedAt = System.nanoTime();
+
+    /**
+     * The end time of the import, in nanoseconds
+     */
+    private volatile long finishedAt;
+
+    /**
+     * The state of the import
+     */
+    private volatile Status status = Status.RUNNING;
+
+    /**
+     * The error message of a failed import
+     */
+    private volatile String error;
+
+    /**
+     * Record a parsed row
+     */
+    public void parsed() {
+        parsed.incrementAndGet();
+    }
+
+    /**
+     * Record a row rejected by the parser
+     */
+    public void rejected() {
+        rejected.incrementAndGet();
+    }
+
+    /**
+     * Record a committed chunk
+     * @param size the number of cities written by the chunk
+     */
+    public void chunkCommitted(int size) {
+        written.addAndGet(size);
+        chunks.incrementAndGet();
+    }
+
+    /**
+     * Record cities updated by a committed chunk
+     * @param count the number of updated cities
+     */
+    public void updated(int count) {
+        updated.addAndGet(count);
+    }
+
+    /**
+     * Record cities found unchanged
+     * @param count the number of unchanged cities
+     */
+    public void unchanged(int count) {
+        unchanged.addAndGet(count);
+    }
+
+    /**
+     * Record deleted cities
+     * @param count the number of deleted cities
+     */
+    public void deleted(int count) {
+        deleted.addAndGet(count);
+    }
+
+    /**
+     * Record the cities committed by a previous run
+     * @param count the number of cities skipped
+     */
+    public void resumedFrom(long count) {
+        resumedFrom = count;
+    }
+
+    /**
+     * Record the duration of a stage
+     * @param stage the stage name
+     * @param startedAt the start time of the stage, from {@link System#nanoTime()}
+     */
+    public void stage(String stage, long startedAt) {
+        stages.put(stage, Duration.ofNanos(System.nanoTime() - startedAt));
+    }
+
+    /**
+     * Mark the import as finished
+     */
+    public void finish() {
+        finishedAt = System.nanoTime();
+        status = Status.COMPLETED;
+    }
+
+    /**
+     * Mark the import as failed
+     * @param e the cause of the failure
+     */
+    public void fail(Exception e) {
+        finishedAt = System.nanoTime();
+        error = e.getMessage();
+        status = Status.FAILED;
+    }
+
+    /**
+     * Get the number of parsed rows
+     * @return a long
+     */
+    public long getParsed() {
+        return parsed.get();
+    }
+
+    /**
+     * Get the number of rejected rows
+     * @return a long
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * Get the number of cities written
+     * @return a long
+     */
+    public long getWritten() {
+        return written.get();
+    }
+
+    /**
+     * Get the number of updated cities
+     * @return a long
+     */
+    public long getUpdated() {
+        return updated.get();
+    }
+
+    /**
+     * Get the number of unchanged cities
+     * @return a long
+     */
+    public long getUnchanged() {
+        return unchanged.get();
+    }
+
+    /**
+     * Get the number of deleted cities
+     * @return a long
+     */
+    public long getDeleted() {
+        return deleted.get();
+    }
+
+    /**
+     * Get the number of committed chunks
+     * @return an integer
+     */
+    public int getChunks() {
+        return chunks.get();
+    }
+
+    /**
+     * Get the number of cities committed by a previous run
+     * @return a long
+     */
+    public long getResumedFrom() {
+        return resumedFrom;
+    }
+
+    /**
+     * Get the duration of each stage
+     * @return the durations by stage name, in execution order
+     */
+    public Map<String, Duration> getStages() {
+        synchronized (stages) {
+            return new LinkedHashMap<>(stages);
+        }
+    }
+
+    /**
+     * Get the state of the import
+     * @return a Status
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Get the error message of a failed import
+     * @return a string, or null if the import did not fail
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * Get the elapsed time of the import (up to now if it is still running)
+     * @return a Duration
+     */
+    public Duration getElapsed() {
+        long end = finishedAt == 0 ? System.nanoTime() : finishedAt;
+        return Duration.ofNanos(end - startedAt);
+    }
+
+    /**
+     * Check if the import finished, successfully or not, more than a given time ago
+     * @param duration the time
+     * @return a boolean, false if the import is still running
+     */
+    public boolean isFinishedSince(Duration duration) {
+        long end = finishedAt;
+        return end != 0 && System.nanoTime() - end > duration.toNanos();
+    }
+
+    /**
+     * Get the write throughput
+     * @return the number of rows written per second
+     */
+    public double getRowsPerSecond() {
+        long nanos = getElapsed().toNanos();
+        return nanos == 0 ? 0 : getWritten() * 1_000_000_000d / nanos;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder timings = new StringBuilder();
+        getStages().forEach((stage, duration) -> timings.append(", ").append(stage).append('=').append(duration.toMillis()).append(" ms"));
+        return String.format("%d rows parsed (%d rejected), %d cities written (%d updated, %d unchanged, %d deleted, %d resumed) in %d chunks, %d ms (%.0f rows/s)%s",
+                getParsed(), getRejected(), getWritten(), getUpdated(), getUnchanged(), getDeleted(), resumedFrom, getChunks(),
+                getElapsed().toMillis(), getRowsPerSecond(), timings);
+    }
+}
@@ -2,22 +2,35 @@ package fr.diginamic.springdemo.utils;
 
 import fr.diginamic.springdemo.entities.City;
 import fr.diginamic.springdemo.entities.Department;
-import fr.diginamic.springdemo.exceptions.NotFoundException;
+import fr.diginamic.springdemo.entities.ImportCheckpoint;
+import fr.diginamic.springdemo.entities.dtos.CityFingerprint;
+import fr.diginamic.springdemo.events.CitiesReloadedEvent;
 import fr.diginamic.springdemo.repositories.CityRepository;
 import fr.diginamic.springdemo.repositories.DepartmentRepository;
+import fr.diginamic.springdemo.repositories.ImportCheckpointRepository;
+import fr.diginamic.springdemo.services.DepartmentNameCache;
 import fr.diginamic.springdemo.services.DepartmentService;
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVRecord;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.Reader;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
 
 /**
  * Utility class for importing data from files
@@ -25,6 +38,11 @@ import java.util.concurrent.atomic.AtomicInteger;
 @Component
 public class ImportUtils {
 
+    /**
+     * The headers of the census CSV file
+     */
+    public static final String[] CENSUS_HEADERS = {"codeRegion", "nameRegion", "codeDepartment", "codeArrondissement", "codeCanton", "codeCommune", "nameCommune", "populationMunicipale", "populationComptéeAPart", "populationTotale"};
+
     /**
      * The CityRepository
      */
@@ -36,64 +54,334 @@ public class ImportUtils {
      */
     @Autowired
     private DepartmentRepository departmentRepository;
+
+    /**
+     * The DepartmentService
+     */
     @Autowired
     private DepartmentService departmentService;
 
+    /**
+     * The DepartmentNameCache, whose statistics are printed after each import
+     */
+    @Autowired
+    private DepartmentNameCache departmentNameCache;
+
+    /**
+     * The ImportCheckpointRepository
+     */
+    @Autowired
+    private ImportCheckpointRepository checkpointRepository;
+
+    /**
+     * The NativeCityLoader, used by the native engine
+     */
+    @Autowired
+    private NativeCityLoader nativeCityLoader;
+
+    /**
+     * The ApplicationEventPublisher, used to announce the end of an import
+     * @see CitiesReloadedEvent
+     */
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    /**
+     * The EntityManager, used to flush and clear the persistence context between chunks
+     */
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * The TransactionTemplate, used to commit each chunk in its own transaction
+     */
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * The default number of cities written per transaction
+     */
+    @Value("${import.chunk-size:1000}")
+    private int defaultChunkSize;
+
     /**
      * Import the most populated cities from a CSV file
      * @param path the path to the CSV file
      * @param headers the headers of the CSV file
      * @param limit the maximum number of cities to import
+     * @return the import report
+     */
+    public ImportReport mostPopulatedCitiesCSV(String path, String[] headers, int limit) {
+        return mostPopulatedCitiesCSV(path, headers, limit, defaultChunkSize);
+    }
+
+    /**
+     * Import the most populated cities from a CSV file, writing them in chunks.
+     * Each chunk is persisted in its own transaction and sent to the database as JDBC batches.
+     * @param path the path to the CSV file
+     * @param headers the headers of the CSV file
+     * @param limit the maximum number of cities to import
+     * @param chunkSize the number of cities written per transaction
+     * @return the import report
      */
-    public void mostPopulatedCitiesCSV(String path, String[] headers, int limit) {
-        System.out.println("Importing cities from " + path);
+    public ImportReport mostPopulatedCitiesCSV(String path, String[] headers, int limit, int chunkSize) {
+        return mostPopulatedCitiesCSV(path, headers, new ImportOptions(limit, chunkSize));
+    }
+
+    /**
+     * Import the most populated cities from a CSV file.
+     * The file is parsed sequentially, or in parallel when more than one thread is requested,
+     * then the cities are written in chunks, each chunk in its own transaction.
+     * A full import commits a checkpoint with each chunk, so that it can be resumed after a crash.
+     * @param path the path to the CSV file
+     * @param headers the headers of the CSV file
+     * @param options the import options
+     * @return the import report
+     * @see ImportOptions
+     * @see CensusFileParser
+     */
+    public ImportReport mostPopulatedCitiesCSV(String path, String[] headers, ImportOptions options) {
+        System.out.println("Importing cities from " + path + " with options " + options);
+        ImportReport report = new ImportReport();
+        long stageStart = System.nanoTime();
+        TopCities selection;
         try {
-            Reader in = new FileReader(path);
-            Iterable<CSVRecord> records = CSVFormat.Builder
-                    .create(CSVFormat.EXCEL)
-                    .setDelimiter(';')
-                    .setHeader(headers)
-                    .setSkipHeaderRecord(true)
-                    .build()
-                    .parse(in);
-
-            List<City> cities = new ArrayList<>();
-            AtomicInteger remaining = new AtomicInteger(limit);
-            records.forEach(record -> {
-                if (remaining.getAndDecrement() > 0){
-                    String departmentCode = record.get("codeDepartment").trim();
-                    String cityName = record.get("nameCommune").trim();
-                    int population = Integer.parseInt(record.get("populationTotale").replaceAll(" ", ""));
-
-                    City city = new City();
-                    city.setName(cityName);
-                    city.setPopulation(population);
-                    // Temporarily store the department code in the city object for later processing
-                    city.setDepartment(new Department(departmentCode));
-
-                    cities.add(city);
+            if (options.getThreads() > 1) {
+                selection = new CensusFileParser(headers).parse(Path.of(path), options.getThreads(), options.getLimit(), report);
+            } else {
+                try (InputStream in = new FileInputStream(path)) {
+                    selection = select(in, headers, options.getLimit(), report);
                 }
-            });
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error while importing cities from CSV", e);
+        }
+        report.stage("parse", stageStart);
 
-            // Sort cities by population in descending order
-            cities.sort(Comparator.comparingInt(City::getPopulation).reversed());
-
-            cities.forEach(city -> {
-                String departmentCode = city.getDepartment().getCode();
-                Department department = departmentRepository.findByCode(departmentCode);
-                if (department == null) {
-                    try {
-                        department = departmentService.create(new Department(departmentCode));
-                    } catch (NotFoundException e) {
-                        throw new RuntimeException(e);
-                    }
-                }
+        write(path + "#" + options.getLimit(), selection, options, report);
+        System.out.println("Import finished: " + report);
+        return report;
+    }
 
-                city.setDepartment(department);
-                cityRepository.save(city);
+    /**
+     * Parse census rows from a stream, in a single pass, and keep the most populated cities.
+     * Rows that cannot be parsed are counted as rejected and skipped.
+     * @param in the CSV content, header line included
+     * @param headers the headers of the CSV file
+     * @param limit the number of cities to keep
+     * @param report the import report, counting parsed and rejected rows
+     * @return the most populated cities, with a transient department holding only its code
+     * @throws IOException if the stream cannot be read
+     * @see CensusRowReader
+     * @see TopCities
+     */
+    public TopCities select(InputStream in, String[] headers, int limit, ImportReport report) throws IOException {
+        TopCities cities = new TopCities(limit);
+        new CensusRowReader(headers).readAll(in, cities::offer, report);
+        return cities;
+    }
+
+    /**
+     * Write a selection of cities: resolve their departments, insert (or upsert) them in chunks,
+     * then recompute the department populations in a single statement
+     * @param job the checkpoint key of the import
+     * @param selection the selected cities
+     * @param options the import options
+     * @param report the import report, completed when every chunk is written
+     * @throws IllegalArgumentException if vanished cities are deleted while the selection does not hold the whole file
+     */
+    public void write(String job, TopCities selection, ImportOptions options, ImportReport report) {
+        if (options.isDeleteVanished() && !selection.isComplete()) {
+            // The stored cities outside the selection may still be in the file, they cannot be told from vanished ones
+            throw new IllegalArgumentException("Deleting vanished cities requires a limit covering the whole file: "
+                    + selection.size() + " of " + selection.getOffered() + " cities selected");
+        }
+        // Cities sorted by population in descending order
+        List<City> cities = selection.toSortedList();
+        cities.forEach(city -> city.setContentHash(contentHash(city)));
+
+        if (options.getEngine() == ImportOptions.Engine.NATIVE) {
+            nativeCityLoader.load(cities, options.getChunkSize(), report);
+            finish(report, "native import");
+            return;
+        }
+
+        long stageStart = System.nanoTime();
+        resolveDepartments(cities);
+        report.stage("resolve", stageStart);
+
+        stageStart = System.nanoTime();
+        if (options.isIncremental()) {
+            writeIncremental(cities, options, report);
+        } else {
+            int offset = 0;
+            if (options.isResume()) {
+                offset = checkpointRepository.findById(job).map(ImportCheckpoint::getCommittedRows).orElse(0);
+                report.resumedFrom(offset);
+            }
+            writeAll(cities, offset, options.getChunkSize(), job, report);
+        }
+        report.stage("write", stageStart);
+
+        stageStart = System.nanoTime();
+        departmentService.refreshPopulations();
+        report.stage("aggregate", stageStart);
+        finish(report, "import");
+    }
+
+    /**
+     * Complete an import: the report is finished, the department name cache statistics are printed
+     * and the in-memory city indexes are told to reload
+     * @param report the import report
+     * @param source the kind of import
+     */
+    private void finish(ImportReport report, String source) {
+        report.finish();
+        System.out.println("Department name cache after the import: " + departmentNameCache);
+        eventPublisher.publishEvent(new CitiesReloadedEvent(source));
+    }
+
+    /**
+     * Make sure every department referenced by the cities exists before any city is written.
+     * Existing departments are loaded with a single query, and the missing ones are created in one batch,
+     * the names missing from the bundled reference fetched all at once beforehand.
+     * @param cities the parsed cities
+     */
+    private void resolveDepartments(List<City> cities) {
+        Set<String> codes = cities.stream()
+                .map(city -> city.getDepartment().getCode())
+                .collect(Collectors.toSet());
+
+        Set<String> existing = departmentRepository.findByCodeIn(codes).stream()
+                .map(Department::getCode)
+                .collect(Collectors.toSet());
+
+        List<Department> missing = codes.stream()
+                .filter(code -> !existing.contains(code))
+                .map(Department::new)
+                .toList();
+        if (!missing.isEmpty()) {
+            departmentService.prefetchNames(missing.stream().map(Department::getCode).toList());
+            departmentService.createAll(missing);
+        }
+        System.out.println(codes.size() + " departments referenced, " + missing.size() + " created");
+    }
+
+    /**
+     * Insert cities in chunks, each chunk in its own transaction.
+     * When a job key is given, the offset of the next chunk is committed in the same transaction as the chunk,
+     * and the checkpoint is removed once every chunk is written.
+     * @param cities the cities to insert
+     * @param offset the index of the first city to insert
+     * @param chunkSize the number of cities per chunk
+     * @param job the checkpoint key of the import, or null to write without checkpoints
+     * @param report the import report
+     */
+    private void writeAll(List<City> cities, int offset, int chunkSize, String job, ImportReport report) {
+        for (int from = offset; from < cities.size(); from += chunkSize) {
+            int to = Math.min(from + chunkSize, cities.size());
+            List<City> chunk = cities.subList(from, to);
+            transactionTemplate.executeWithoutResult(status -> {
+                writeChunk(chunk);
+                if (job != null) {
+                    ImportCheckpoint checkpoint = checkpointRepository.findById(job).orElseGet(() -> new ImportCheckpoint(job));
+                    checkpoint.setCommittedRows(to);
+                    checkpointRepository.save(checkpoint);
+                }
             });
-        } catch (IOException e) {
-            throw new RuntimeException("Error while importing cities from CSV", e);
+            report.chunkCommitted(chunk.size());
+        }
+        if (job != null) {
+            checkpointRepository.deleteById(job);
+        }
+    }
+
+    /**
+     * Upsert cities on their natural key (department code, commune code).
+     * Only new cities are inserted and only cities whose content hash changed are updated;
+     * stored cities missing from the import are deleted when requested.
+     * @param cities the imported cities
+     * @param options the import options
+     * @param report the import report
+     */
+    private void writeIncremental(List<City> cities, ImportOptions options, ImportReport report) {
+        Map<String, CityFingerprint> stored = new HashMap<>();
+        cityRepository.findAllFingerprints().forEach(fingerprint -> stored.put(fingerprint.key(), fingerprint));
+
+        List<City> inserts = new ArrayList<>();
+        Map<Integer, City> updates = new LinkedHashMap<>();
+        for (City city : cities) {
+            CityFingerprint fingerprint = stored.remove(city.getDepartment().getCode() + ":" + city.getCommuneCode());
+            if (fingerprint == null) {
+                inserts.add(city);
+            } else if (fingerprint.contentHash() != city.getContentHash()) {
+                updates.put(fingerprint.id(), city);
+            } else {
+                report.unchanged(1);
+            }
+        }
+
+        // An incremental import is idempotent, a rerun picks up where a crashed one stopped without checkpoints
+        int chunkSize = options.getChunkSize();
+        writeAll(inserts, 0, chunkSize, null, report);
+
+        List<Integer> updatedIds = new ArrayList<>(updates.keySet());
+        for (int from = 0; from < updatedIds.size(); from += chunkSize) {
+            List<Integer> chunk = updatedIds.subList(from, Math.min(from + chunkSize, updatedIds.size()));
+            transactionTemplate.executeWithoutResult(status -> updateChunk(chunk, updates));
+            report.updated(chunk.size());
+        }
+
+        if (options.isDeleteVanished()) {
+            List<Integer> vanishedIds = stored.values().stream().map(CityFingerprint::id).toList();
+            for (int from = 0; from < vanishedIds.size(); from += chunkSize) {
+                List<Integer> chunk = vanishedIds.subList(from, Math.min(from + chunkSize, vanishedIds.size()));
+                cityRepository.deleteAllByIdInBatch(chunk);
+                report.deleted(chunk.size());
+            }
         }
     }
+
+    /**
+     * Apply the imported content to a chunk of stored cities
+     * @param ids the ids of the stored cities
+     * @param updates the imported cities by stored id
+     */
+    private void updateChunk(List<Integer> ids, Map<Integer, City> updates) {
+        cityRepository.findAllById(ids).forEach(city -> {
+            City imported = updates.get(city.getId());
+            city.setName(imported.getName());
+            city.setPopulation(imported.getPopulation());
+            city.setContentHash(imported.getContentHash());
+        });
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    /**
+     * Compute the hash of the imported content of a city
+     * @param city the city
+     * @return a CRC32 of the name and population
+     */
+    private static long contentHash(City city) {
+        CRC32 crc = new CRC32();
+        crc.update((city.getName() + ';' + city.getPopulation()).getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+
+    /**
+     * Persist a chunk of cities, then flush and clear the persistence context
+     * so that memory stays bounded whatever the size of the import.
+     * Departments are referenced by proxy, they are known to exist after {@link #resolveDepartments(List)}.
+     * @param chunk the cities to persist
+     */
+    private void writeChunk(List<City> chunk) {
+        chunk.forEach(city -> {
+            String departmentCode = city.getDepartment().getCode();
+            city.setDepartment(entityManager.getReference(Department.class, departmentCode));
+            entityManager.persist(city);
+        });
+        entityManager.flush();
+        entityManager.clear();
+    }
 }
@@ -0,0 +1,92 @@
+package fr.diginamic.springdemo.utils;
+
+import fr.diginamic.springdemo.exceptions.InvalidException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque cursors of the keyset (seek) paginated listings.
+ * A cursor holds the sort key values of the last item of a page, so that the next page is read with a
+ * "greater than the last key" condition on an index rather than by skipping an offset.
+ * Each value is written after its length, so that a value may hold any character, and the whole key is
+ * encoded in URL-safe Base64: clients should not rely on the format.
+ * @see fr.diginamic.springdemo.entities.dtos.CursorPage
+ */
+public final class KeysetCursor {
+
+    /**
+     * The maximum number of items of a page
+     */
+    public static final int MAX_PAGE_SIZE = 100;
+
+    /**
+     * The separator of the length of a value and the value
+     */
+    private static final char LENGTH_SEPARATOR = ':';
+
+    private KeysetCursor() {
+    }
+
+    /**
+     * Encode the key values of the last item of a page
+     * @param values the key values
+     * @return the cursor
+     */
+    public static String encode(Object... values) {
+        StringBuilder key = new StringBuilder();
+        for (Object value : values) {
+            String text = String.valueOf(value);
+            key.append(text.length()).append(LENGTH_SEPARATOR).append(text);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decode a cursor
+     * @param cursor the cursor
+     * @param count the expected number of values
+     * @return the key values
+     * @throws InvalidException if the cursor is malformed
+     */
+    public static String[] decode(String cursor, int count) throws InvalidException {
+        try {
+            String key = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] values = new String[count];
+            int position = 0;
+            for (int i = 0; i < count; i++) {
+                int separator = key.indexOf(LENGTH_SEPARATOR, position);
+                if (separator < 0) {
+                    break;
+                }
+                int length = Integer.parseInt(key.substring(position, separator));
+                if (length < 0 || length > key.length() - separator - 1) {
+                    break;
+                }
+                position = separator + 1 + length;
+                values[i] = key.substring(separator + 1, position);
+            }
+            if (values[count - 1] != null && position == key.length()) {
+                return values;
+            }
+        } catch (IllegalArgumentException e) {
+            // Not Base64, or a length that is not a number, reported below
+        }
+        throw new InvalidException("Invalid cursor " + cursor);
+    }
+
+    /**
+     * Decode an integer key value
+     * @param value the key value
+     * @param cursor the cursor, for the error message
+     * @return the integer
+     * @throws InvalidException if the value is not an integer
+     */
+    public static int intValue(String value, String cursor) throws InvalidException {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new InvalidException("Invalid cursor " + cursor);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package fr.diginamic.springdemo.utils;
+
+import fr.diginamic.springdemo.exceptions.PayloadTooLargeException;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Stream counting the bytes read from another one, and failing once more than a maximum were read
+ */
+public class LimitedInputStream extends FilterInputStream {
+
+    /**
+     * The maximum number of bytes read
+     */
+    private final long maxBytes;
+
+    /**
+     * The number of bytes read so far
+     */
+    private long count;
+
+    /**
+     * Constructor
+     * @param in the stream read
+     * @param maxBytes the maximum number of bytes read
+     */
+    public LimitedInputStream(InputStream in, long maxBytes) {
+        super(in);
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = super.read();
+        if (b != -1) {
+            count(1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = super.read(b, off, len);
+        if (read > 0) {
+            count(read);
+        }
+        return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = super.skip(n);
+        count(skipped);
+        return skipped;
+    }
+
+    /**
+     * Count read bytes
+     * @param read the number of bytes read
+     * @throws PayloadTooLargeException if more than the maximum were read
+     */
+    private void count(long read) throws PayloadTooLargeException {
+        count += read;
+        if (count > maxBytes) {
+            throw new PayloadTooLargeException("The upload exceeds " + maxBytes + " bytes");
+        }
+    }
+}
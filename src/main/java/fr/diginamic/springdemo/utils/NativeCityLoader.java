@@ -0,0 +1,142 @@
+package fr.diginamic.springdemo.utils;
+
+import fr.diginamic.springdemo.entities.City;
+import fr.diginamic.springdemo.services.DepartmentService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk loader writing census cities with plain JDBC batches, bypassing JPA entirely.
+ * It is meant for the initial load of an empty H2 database: departments are inserted with their code as a
+ * placeholder name, cities are inserted in prepared-statement batches, then the department names are fetched
+ * all at once and written in a single batch, and the department populations are recomputed in a single statement.
+ * @see ImportUtils
+ */
+@Component
+public class NativeCityLoader {
+
+    /**
+     * Insert statement for cities
+     */
+    private static final String INSERT_CITY = "insert into cities (id, name, population, department_code, commune_code, content_hash) " +
+            "values (?, ?, ?, ?, ?, ?)";
+
+    /**
+     * Reservation of a block of ids from the sequence used by the City entity
+     */
+    private static final String NEXT_ID_BLOCK = "select next value for cities_seq";
+
+    /**
+     * The JdbcTemplate
+     */
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * The TransactionTemplate, used to commit each chunk in its own transaction
+     */
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * The DepartmentService, used to resolve the department names
+     */
+    @Autowired
+    private DepartmentService departmentService;
+
+    /**
+     * Load cities into an empty cities table
+     * @param cities the cities, with a transient department holding only its code
+     * @param chunkSize the number of cities per batch and transaction
+     * @param report the import report
+     * @throws IllegalStateException if the cities table is not empty
+     */
+    public void load(List<City> cities, int chunkSize, ImportReport report) {
+        Integer existing = jdbcTemplate.queryForObject("select count(*) from cities", Integer.class);
+        if (existing != null && existing > 0) {
+            throw new IllegalStateException("The native engine only loads an empty cities table, " + existing + " cities found");
+        }
+
+        long stageStart = System.nanoTime();
+        Set<String> codes = cities.stream().map(city -> city.getDepartment().getCode()).collect(Collectors.toSet());
+        Set<String> missing = new HashSet<>(codes);
+        missing.removeAll(jdbcTemplate.queryForList("select code from department", String.class));
+        if (!missing.isEmpty()) {
+            jdbcTemplate.batchUpdate("insert into department (code, name, population) values (?, ?, 0)", missing, missing.size(), (ps, code) -> {
+                ps.setString(1, code);
+                ps.setString(2, code);
+            });
+        }
+
+        for (int from = 0; from < cities.size(); from += chunkSize) {
+            List<City> chunk = cities.subList(from, Math.min(from + chunkSize, cities.size()));
+            transactionTemplate.executeWithoutResult(status -> {
+                int[] ids = reserveIds(chunk.size());
+                jdbcTemplate.batchUpdate(INSERT_CITY, new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        City city = chunk.get(i);
+                        ps.setInt(1, ids[i]);
+                        ps.setString(2, city.getName());
+                        ps.setInt(3, city.getPopulation());
+                        ps.setString(4, city.getDepartment().getCode());
+                        ps.setString(5, city.getCommuneCode());
+                        ps.setLong(6, city.getContentHash());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return chunk.size();
+                    }
+                });
+            });
+            report.chunkCommitted(chunk.size());
+        }
+        report.stage("write", stageStart);
+
+        if (!missing.isEmpty()) {
+            stageStart = System.nanoTime();
+            departmentService.refreshNames();
+            report.stage("resolve", stageStart);
+        }
+
+        stageStart = System.nanoTime();
+        departmentService.refreshPopulations();
+        report.stage("aggregate", stageStart);
+    }
+
+    /**
+     * Reserve city ids the way the pooled optimizer of Hibernate does: each sequence value v reserves the
+     * {@link City#ID_ALLOCATION_SIZE} ids up to v, so one call serves a whole block of cities and the ids
+     * never collide with those Hibernate allocates afterwards.
+     * @param count the number of ids
+     * @return the ids
+     */
+    private int[] reserveIds(int count) {
+        int[] ids = new int[count];
+        int reserved = 0;
+        while (reserved < count) {
+            int high = Objects.requireNonNull(jdbcTemplate.queryForObject(NEXT_ID_BLOCK, Integer.class));
+            int low = high - City.ID_ALLOCATION_SIZE + 1;
+            if (low < 1) {
+                // The initial value of the sequence closes no block
+                continue;
+            }
+            for (int id = low; id <= high && reserved < count; id++) {
+                ids[reserved++] = id;
+            }
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,231 @@
+package fr.diginamic.springdemo.utils;
+
+import fr.diginamic.springdemo.entities.dtos.Suggestion;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * Immutable prefix index over the normalized names of the cities and departments.
+ * Every word of a name starts a key ("saint etienne", "etienne"), and department codes are keys too.
+ * Keys and prefixes are search keys ({@link TextNormalizer#searchKey(String)}), so "st etie" matches "Saint-Étienne".
+ * The keys are held in a sorted array with their owners in a parallel array, so the keys starting with a prefix
+ * are a contiguous range found with two binary searches.
+ * Writes never modify an index: they produce a new one, merging the changed keys in a single pass.
+ * @see TextNormalizer
+ * @see fr.diginamic.springdemo.services.AutocompleteService
+ */
+public final class PrefixIndex {
+
+    /**
+     * Order of the results: most populated first, then by name
+     */
+    private static final Comparator<Suggestion> RANKING = Comparator.comparingInt(Suggestion::population).reversed()
+            .thenComparing(Suggestion::name, Comparator.nullsLast(Comparator.naturalOrder()));
+
+    /**
+     * A key and the result it points to
+     * @param key the normalized key
+     * @param owner the result
+     */
+    private record Key(String key, Suggestion owner) {
+    }
+
+    /**
+     * The normalized keys, sorted
+     */
+    private final String[] keys;
+
+    /**
+     * The results, in the order of the keys
+     */
+    private final Suggestion[] owners;
+
+    /**
+     * Constructor
+     * @param keys the normalized keys, sorted
+     * @param owners the results, in the order of the keys
+     */
+    private PrefixIndex(String[] keys, Suggestion[] owners) {
+        this.keys = keys;
+        this.owners = owners;
+    }
+
+    /**
+     * Build an index
+     * @param suggestions the cities and departments
+     * @return the index
+     */
+    public static PrefixIndex of(Collection<Suggestion> suggestions) {
+        return new PrefixIndex(new String[0], new Suggestion[0]).with(suggestions);
+    }
+
+    /**
+     * Get the most populated results having a key starting with a prefix
+     * @param prefix the prefix, normalized by the index, its last word being incomplete
+     * @param limit the maximum number of results
+     * @return the results, most populated first
+     */
+    public List<Suggestion> search(String prefix, int limit) {
+        String normalized = TextNormalizer.searchPrefix(prefix);
+        if (normalized.isEmpty() || limit < 1) {
+            return List.of();
+        }
+        int from = lowerBound(normalized);
+        // Keys only contain [a-z0-9 ], so every key starting with the prefix sorts before the prefix followed by the highest char
+        int to = lowerBound(normalized + '\uffff');
+
+        // Keep the top results in a min-heap, a result reached through two keys is only counted once
+        PriorityQueue<Suggestion> top = new PriorityQueue<>(limit + 1, RANKING.reversed());
+        Set<Suggestion> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = from; i < to; i++) {
+            Suggestion owner = owners[i];
+            if (seen.add(owner)) {
+                top.offer(owner);
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            }
+        }
+        List<Suggestion> results = new ArrayList<>(top);
+        results.sort(RANKING);
+        return results;
+    }
+
+    /**
+     * Get an index with more results
+     * @param suggestions the results to add
+     * @return a new index
+     */
+    public PrefixIndex with(Collection<Suggestion> suggestions) {
+        List<Key> added = new ArrayList<>();
+        for (Suggestion suggestion : suggestions) {
+            for (String key : keysOf(suggestion)) {
+                added.add(new Key(key, suggestion));
+            }
+        }
+        added.sort(Comparator.comparing(Key::key));
+
+        // Merge the sorted keys with the new ones
+        int size = keys.length + added.size();
+        String[] mergedKeys = new String[size];
+        Suggestion[] mergedOwners = new Suggestion[size];
+        int i = 0;
+        int j = 0;
+        for (int k = 0; k < size; k++) {
+            if (j >= added.size() || (i < keys.length && keys[i].compareTo(added.get(j).key()) <= 0)) {
+                mergedKeys[k] = keys[i];
+                mergedOwners[k] = owners[i++];
+            } else {
+                mergedKeys[k] = added.get(j).key();
+                mergedOwners[k] = added.get(j++).owner();
+            }
+        }
+        return new PrefixIndex(mergedKeys, mergedOwners);
+    }
+
+    /**
+     * Get an index without some results
+     * @param filter the results to remove
+     * @return a new index
+     */
+    public PrefixIndex without(Predicate<Suggestion> filter) {
+        String[] keptKeys = new String[keys.length];
+        Suggestion[] keptOwners = new Suggestion[keys.length];
+        int size = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (!filter.test(owners[i])) {
+                keptKeys[size] = keys[i];
+                keptOwners[size++] = owners[i];
+            }
+        }
+        if (size == keys.length) {
+            return this;
+        }
+        return new PrefixIndex(Arrays.copyOf(keptKeys, size), Arrays.copyOf(keptOwners, size));
+    }
+
+    /**
+     * Get an index with some results replaced, their keys unchanged (e.g. a new population)
+     * @param filter the results to replace
+     * @param replacement the replacement of a result
+     * @return a new index
+     */
+    public PrefixIndex replace(Predicate<Suggestion> filter, UnaryOperator<Suggestion> replacement) {
+        Suggestion[] replaced = owners.clone();
+        // The keys of a result are spread over the index, they all point to the same replacement
+        Map<Suggestion, Suggestion> replacements = new IdentityHashMap<>();
+        for (int i = 0; i < replaced.length; i++) {
+            if (filter.test(replaced[i])) {
+                replaced[i] = replacements.computeIfAbsent(replaced[i], replacement);
+            }
+        }
+        return replacements.isEmpty() ? this : new PrefixIndex(keys, replaced);
+    }
+
+    /**
+     * Get the number of keys in the index
+     * @return an integer
+     */
+    public int size() {
+        return keys.length;
+    }
+
+    /**
+     * Get the keys of a result: its normalized name from each word on, and the code of a department
+     * @param suggestion the result
+     * @return the keys
+     */
+    private static List<String> keysOf(Suggestion suggestion) {
+        List<String> keys = new ArrayList<>();
+        String name = TextNormalizer.searchKey(suggestion.name());
+        for (int i = 0; i < name.length(); i++) {
+            if (i == 0 || name.charAt(i - 1) == ' ') {
+                keys.add(name.substring(i));
+            }
+        }
+        if (Suggestion.DEPARTMENT.equals(suggestion.type())) {
+            String code = TextNormalizer.normalize(suggestion.departmentCode());
+            if (!code.isEmpty() && !keys.contains(code)) {
+                keys.add(code);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Find the first key greater than or equal to a given one
+     * @param key the key
+     * @return the position, or the size of the index if every key is lower
+     */
+    private int lowerBound(String key) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keys[middle].compareTo(key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    public String toString() {
+        return "{" +
+                "keys=" + keys.length +
+                '}';
+    }
+}
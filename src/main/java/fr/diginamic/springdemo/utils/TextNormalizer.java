@@ -0,0 +1,94 @@
+package fr.diginamic.springdemo.utils;
+
+import java.text.Normalizer;
+
+/**
+ * Normalization of the names used as search keys.
+ * Names are lower-cased and stripped of their accents, and every run of other characters (spaces, hyphens,
+ * apostrophes...) becomes a single space: "Saint-Étienne" and "saint etienne" have the same key.
+ * Search keys also read the abbreviations "st" and "ste" as "saint" and "sainte", so "St Étienne" matches too.
+ * @see PrefixIndex
+ * @see TrigramIndex
+ */
+public final class TextNormalizer {
+
+    /**
+     * Utility class
+     */
+    private TextNormalizer() {
+    }
+
+    /**
+     * Normalize a name
+     * @param text the name
+     * @return the normalized name, empty if the name has no letter or digit
+     */
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder normalized = new StringBuilder(decomposed.length());
+        boolean separator = true;
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = Character.toLowerCase(decomposed.charAt(i));
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')) {
+                normalized.append(c);
+                separator = false;
+            } else if (c == 'œ' || c == 'æ') {
+                normalized.append(c == 'œ' ? "oe" : "ae");
+                separator = false;
+            } else if (!separator) {
+                normalized.append(' ');
+                separator = true;
+            }
+        }
+        int length = normalized.length();
+        if (length > 0 && normalized.charAt(length - 1) == ' ') {
+            normalized.setLength(length - 1);
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * Get the search key of a name: the normalized name, with the abbreviations of "saint" and "sainte" expanded
+     * @param text the name
+     * @return the key
+     */
+    public static String searchKey(String text) {
+        return expandAbbreviations(normalize(text), true);
+    }
+
+    /**
+     * Get the search key of a name being typed: as {@link #searchKey(String)}, except for the last word,
+     * which is incomplete and kept as is ("st" may be the start of "strasbourg")
+     * @param text the beginning of the name
+     * @return the key
+     */
+    public static String searchPrefix(String text) {
+        return expandAbbreviations(normalize(text), false);
+    }
+
+    /**
+     * Expand the abbreviations of "saint" and "sainte" in a normalized name
+     * @param normalized the normalized name
+     * @param lastWord whether the last word is expanded too
+     * @return the expanded name
+     */
+    private static String expandAbbreviations(String normalized, boolean lastWord) {
+        String[] words = normalized.split(" ");
+        int expanded = lastWord ? words.length : words.length - 1;
+        for (int i = 0; i < expanded; i++) {
+            switch (words[i]) {
+                case "st" -> words[i] = "saint";
+                case "ste" -> words[i] = "sainte";
+                default -> {
+                }
+            }
+        }
+        return String.join(" ", words);
+    }
+}
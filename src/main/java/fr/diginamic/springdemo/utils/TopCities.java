@@ -0,0 +1,111 @@
+package fr.diginamic.springdemo.utils;
+
+import fr.diginamic.springdemo.entities.City;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Streaming selection of the K most populated cities.
+ * Cities are kept in a bounded min-heap keyed on population, so memory stays in O(K) whatever the input size.
+ * @see ImportUtils
+ */
+public class TopCities {
+
+    /**
+     * The ranking order: population, then department code, name and commune code.
+     * The order is total, as (department code, commune code) is unique: the selection and its order do not depend
+     * on the order the cities are read in, which a resumed import relies on to skip the cities already written.
+     */
+    private static final Comparator<City> ORDER = Comparator.comparingInt(City::getPopulation)
+            .thenComparing(city -> city.getDepartment().getCode(), Comparator.reverseOrder())
+            .thenComparing(City::getName, Comparator.reverseOrder())
+            .thenComparing(City::getCommuneCode, Comparator.reverseOrder());
+
+    /**
+     * The maximum number of cities kept
+     */
+    private final int capacity;
+
+    /**
+     * The selected cities, the least populated one on top
+     */
+    private final PriorityQueue<City> heap;
+
+    /**
+     * The number of cities offered to the selection, kept or not
+     */
+    private long offered;
+
+    /**
+     * Constructor
+     * @param capacity the maximum number of cities kept
+     */
+    public TopCities(int capacity) {
+        this.capacity = capacity;
+        this.heap = new PriorityQueue<>(Math.max(1, Math.min(capacity, 1024)), ORDER);
+    }
+
+    /**
+     * Offer a city to the selection
+     * @param city the city
+     */
+    public void offer(City city) {
+        offered++;
+        if (capacity <= 0) {
+            return;
+        }
+        if (heap.size() < capacity) {
+            heap.add(city);
+        } else if (ORDER.compare(city, heap.peek()) > 0) {
+            heap.poll();
+            heap.add(city);
+        }
+    }
+
+    /**
+     * Merge another selection into this one
+     * @param other the other selection
+     */
+    public void addAll(TopCities other) {
+        // The cities the other selection left out count as offered too
+        offered += other.offered - other.heap.size();
+        other.heap.forEach(this::offer);
+    }
+
+    /**
+     * Get the number of selected cities
+     * @return an integer
+     */
+    public int size() {
+        return heap.size();
+    }
+
+    /**
+     * Get the number of cities offered to the selection
+     * @return a long
+     */
+    public long getOffered() {
+        return offered;
+    }
+
+    /**
+     * Check if every offered city was selected, i.e. the selection holds the whole input
+     * @return a boolean
+     */
+    public boolean isComplete() {
+        return offered == heap.size();
+    }
+
+    /**
+     * Get the selected cities
+     * @return a list of cities sorted by population in descending order
+     */
+    public List<City> toSortedList() {
+        List<City> cities = new ArrayList<>(heap);
+        cities.sort(ORDER.reversed());
+        return cities;
+    }
+}
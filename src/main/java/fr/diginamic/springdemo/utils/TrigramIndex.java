@@ -0,0 +1,273 @@
+package fr.diginamic.springdemo.utils;
+
+import fr.diginamic.springdemo.entities.dtos.CityMatch;
+import fr.diginamic.springdemo.entities.dtos.CityRow;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Immutable trigram index over the city names, for typo-tolerant searches.
+ * Names are normalized (see {@link TextNormalizer#searchKey(String)}) and split into
+ * the trigrams of the name padded with spaces. Each trigram, packed into an int, maps to the sorted int array
+ * of the cities containing it. A search counts the trigrams each city shares with the query, scores it with the
+ * Dice coefficient (2 * shared / (query trigrams + city trigrams)), and keeps the best ones, the most populated first on ties.
+ * Writes never modify an index: a removed city is only marked as such, and an added city is appended.
+ * @see fr.diginamic.springdemo.services.FuzzySearchService
+ */
+public final class TrigramIndex {
+
+    /**
+     * Order of the matches: best score first, then most populated, then by name
+     */
+    private static final Comparator<CityMatch> RANKING = Comparator.comparingDouble(CityMatch::score).reversed()
+            .thenComparing(Comparator.comparingInt(CityMatch::population).reversed())
+            .thenComparing(CityMatch::name);
+
+    /**
+     * The minimum number of removed cities before an index is compacted
+     */
+    private static final int COMPACTION_THRESHOLD = 1024;
+
+    /**
+     * The city ids, -1 for a removed city
+     */
+    private final int[] ids;
+
+    /**
+     * The city names
+     */
+    private final String[] names;
+
+    /**
+     * The city department codes
+     */
+    private final String[] departmentCodes;
+
+    /**
+     * The city populations
+     */
+    private final int[] populations;
+
+    /**
+     * The number of distinct trigrams of each city name
+     */
+    private final int[] trigramCounts;
+
+    /**
+     * The positions of the cities containing each trigram, in ascending order
+     */
+    private final Map<Integer, int[]> postings;
+
+    /**
+     * The number of removed cities
+     */
+    private final int removed;
+
+    /**
+     * Constructor
+     * @param ids the city ids
+     * @param names the city names
+     * @param departmentCodes the city department codes
+     * @param populations the city populations
+     * @param trigramCounts the number of distinct trigrams of each city name
+     * @param postings the positions of the cities containing each trigram
+     * @param removed the number of removed cities
+     */
+    private TrigramIndex(int[] ids, String[] names, String[] departmentCodes, int[] populations, int[] trigramCounts,
+                         Map<Integer, int[]> postings, int removed) {
+        this.ids = ids;
+        this.names = names;
+        this.departmentCodes = departmentCodes;
+        this.populations = populations;
+        this.trigramCounts = trigramCounts;
+        this.postings = postings;
+        this.removed = removed;
+    }
+
+    /**
+     * Build an index
+     * @param rows the cities
+     * @return the index
+     */
+    public static TrigramIndex of(Collection<CityRow> rows) {
+        int size = rows.size();
+        int[] ids = new int[size];
+        String[] names = new String[size];
+        String[] departmentCodes = new String[size];
+        int[] populations = new int[size];
+        int[] trigramCounts = new int[size];
+        int[][] trigrams = new int[size][];
+
+        // First pass: the trigrams of each city, and the length of each posting list
+        Map<Integer, int[]> lengths = new HashMap<>();
+        int position = 0;
+        for (CityRow row : rows) {
+            ids[position] = row.id();
+            names[position] = row.name();
+            departmentCodes[position] = row.departmentCode();
+            populations[position] = row.population();
+            trigrams[position] = trigrams(row.name());
+            trigramCounts[position] = trigrams[position].length;
+            for (int trigram : trigrams[position]) {
+                lengths.computeIfAbsent(trigram, t -> new int[1])[0]++;
+            }
+            position++;
+        }
+
+        // Second pass: the posting lists, filled in ascending order of position
+        Map<Integer, int[]> postings = new HashMap<>(lengths.size() * 2);
+        lengths.forEach((trigram, length) -> postings.put(trigram, new int[length[0]]));
+        Map<Integer, int[]> filled = new HashMap<>(lengths.size() * 2);
+        for (int i = 0; i < size; i++) {
+            for (int trigram : trigrams[i]) {
+                postings.get(trigram)[filled.computeIfAbsent(trigram, t -> new int[1])[0]++] = i;
+            }
+        }
+        return new TrigramIndex(ids, names, departmentCodes, populations, trigramCounts, postings, 0);
+    }
+
+    /**
+     * Get the cities whose name is the most similar to a query
+     * @param query the query
+     * @param limit the maximum number of matches
+     * @param minScore the minimum score of a match, from 0 to 1
+     * @return the matches, best first
+     */
+    public List<CityMatch> search(String query, int limit, double minScore) {
+        int[] queryTrigrams = trigrams(query);
+        if (queryTrigrams.length == 0 || limit < 1) {
+            return List.of();
+        }
+
+        // Count the trigrams shared with the query, remembering the cities reached
+        int[] shared = new int[ids.length];
+        int[] reached = new int[64];
+        int reachedCount = 0;
+        for (int trigram : queryTrigrams) {
+            int[] positions = postings.get(trigram);
+            if (positions == null) {
+                continue;
+            }
+            for (int position : positions) {
+                if (shared[position]++ == 0) {
+                    if (reachedCount == reached.length) {
+                        reached = Arrays.copyOf(reached, reachedCount * 2);
+                    }
+                    reached[reachedCount++] = position;
+                }
+            }
+        }
+
+        // Keep the best matches in a min-heap
+        PriorityQueue<CityMatch> top = new PriorityQueue<>(limit + 1, RANKING.reversed());
+        for (int i = 0; i < reachedCount; i++) {
+            int position = reached[i];
+            if (ids[position] < 0) {
+                continue;
+            }
+            double score = 2.0 * shared[position] / (queryTrigrams.length + trigramCounts[position]);
+            if (score >= minScore) {
+                top.offer(new CityMatch(ids[position], names[position], departmentCodes[position], populations[position], score));
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            }
+        }
+        List<CityMatch> matches = new ArrayList<>(top);
+        matches.sort(RANKING);
+        return matches;
+    }
+
+    /**
+     * Get an index with a city added, or replaced if its id is already in the index
+     * @param row the city
+     * @return a new index
+     */
+    public TrigramIndex with(CityRow row) {
+        TrigramIndex base = without(row.id());
+        int position = base.ids.length;
+        int[] trigrams = trigrams(row.name());
+
+        // The new city comes last, so appending its position keeps the posting lists sorted
+        Map<Integer, int[]> postings = new HashMap<>(base.postings);
+        for (int trigram : trigrams) {
+            int[] positions = postings.get(trigram);
+            if (positions == null) {
+                postings.put(trigram, new int[]{position});
+            } else {
+                postings.put(trigram, ArrayUtils.insert(positions, positions.length, position));
+            }
+        }
+        return new TrigramIndex(ArrayUtils.insert(base.ids, position, row.id()), ArrayUtils.insert(base.names, position, row.name()),
+                ArrayUtils.insert(base.departmentCodes, position, row.departmentCode()),
+                ArrayUtils.insert(base.populations, position, row.population()),
+                ArrayUtils.insert(base.trigramCounts, position, trigrams.length), postings, base.removed);
+    }
+
+    /**
+     * Get an index without a city.
+     * The city is only marked as removed, the index being compacted once enough cities are removed.
+     * @param id the city id
+     * @return a new index, or this one if the city is not in it
+     */
+    public TrigramIndex without(int id) {
+        int position = ArrayUtils.indexOf(ids, id);
+        if (position < 0) {
+            return this;
+        }
+        int[] remaining = ids.clone();
+        remaining[position] = -1;
+        if (removed + 1 >= COMPACTION_THRESHOLD && removed + 1 > remaining.length / 4) {
+            List<CityRow> rows = new ArrayList<>(remaining.length);
+            for (int i = 0; i < remaining.length; i++) {
+                if (remaining[i] >= 0) {
+                    rows.add(new CityRow(remaining[i], names[i], populations[i], departmentCodes[i]));
+                }
+            }
+            return of(rows);
+        }
+        return new TrigramIndex(remaining, names, departmentCodes, populations, trigramCounts, postings, removed + 1);
+    }
+
+    /**
+     * Get the number of cities in the index
+     * @return an integer
+     */
+    public int size() {
+        return ids.length - removed;
+    }
+
+    /**
+     * Get the distinct trigrams of a name, padded with a space on both sides, each packed into an int
+     * @param name the name
+     * @return the trigrams, sorted
+     */
+    static int[] trigrams(String name) {
+        String key = TextNormalizer.searchKey(name);
+        if (key.isEmpty()) {
+            return new int[0];
+        }
+        String padded = " " + key + " ";
+        int[] trigrams = new int[padded.length() - 2];
+        for (int i = 0; i < trigrams.length; i++) {
+            // Normalized names are ASCII, one byte per char
+            trigrams[i] = padded.charAt(i) << 16 | padded.charAt(i + 1) << 8 | padded.charAt(i + 2);
+        }
+        return Arrays.stream(trigrams).sorted().distinct().toArray();
+    }
+
+    @Override
+    public String toString() {
+        return "{" +
+                "cities=" + size() +
+                ", trigrams=" + postings.size() +
+                '}';
+    }
+}
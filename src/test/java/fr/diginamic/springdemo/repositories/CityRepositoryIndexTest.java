@@ -0,0 +1,144 @@
+package fr.diginamic.springdemo.repositories;
+
+import fr.diginamic.springdemo.SpringDemoApplication;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks that the queries the endpoints run on the CityRepository are served by an index of the cities table.
+ * The SQL generated by Hibernate is captured, its parameters replaced by literals, and its H2 plan must not be a table scan.
+ */
+@SpringBootTest(classes = SpringDemoApplication.class,
+        properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector=fr.diginamic.springdemo.repositories.CityRepositoryIndexTest$SqlCapture")
+@ActiveProfiles("test")
+public class CityRepositoryIndexTest {
+
+    /**
+     * Records the SQL statements prepared by Hibernate in the test thread, not those of the index loader
+     */
+    public static class SqlCapture implements StatementInspector {
+
+        private static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+        private static volatile Thread capturing;
+
+        @Override
+        public String inspect(String sql) {
+            if (Thread.currentThread() == capturing) {
+                STATEMENTS.add(sql);
+            }
+            return sql;
+        }
+    }
+
+    @Autowired
+    private CityRepository cityRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void findByName() {
+        assertUsesIndex(() -> cityRepository.findByName("Paris"), "'Paris'");
+    }
+
+    @Test
+    public void findDTOsByNameStartingWith() {
+        assertUsesIndex(() -> cityRepository.findDTOsByNameStartingWith("Mont"), "'Mont%'");
+    }
+
+    @Test
+    public void findDTOsByPopulationGreaterThan() {
+        assertUsesIndex(() -> cityRepository.findDTOsByPopulationGreaterThan(100000), "100000");
+    }
+
+    @Test
+    public void findDTOsByPopulationBetween() {
+        assertUsesIndex(() -> cityRepository.findDTOsByPopulationBetween(50000, 60000), "50000", "60000");
+    }
+
+    @Test
+    public void findDTOsByDepartmentCode() {
+        assertUsesIndex(() -> cityRepository.findDTOsByDepartmentCode("34"), "'34'");
+    }
+
+    @Test
+    public void findDTOsByDepartmentCodeAndPopulationBetween() {
+        assertUsesIndex(() -> cityRepository.findDTOsByDepartmentCodeAndPopulationBetween("34", 10000, 20000), "'34'", "10000", "20000");
+    }
+
+    @Test
+    public void findFirstByPopulation() {
+        // The last parameter is the row limit of the page
+        assertUsesIndex(() -> cityRepository.findFirstByPopulation(PageRequest.of(0, 11)), "11");
+    }
+
+    @Test
+    public void findNextByPopulation() {
+        // The population is bound twice, once per occurrence in the seek condition
+        assertUsesIndex(() -> cityRepository.findNextByPopulation(100000, 500, PageRequest.of(0, 11)), "100000", "100000", "500", "11");
+    }
+
+    @Test
+    public void findFirstByName() {
+        assertUsesIndex(() -> cityRepository.findFirstByName(PageRequest.of(0, 11)), "11");
+    }
+
+    @Test
+    public void findNextByName() {
+        assertUsesIndex(() -> cityRepository.findNextByName("Mont", 500, PageRequest.of(0, 11)), "'Mont'", "'Mont'", "500", "11");
+    }
+
+    /**
+     * Run a query and check that the cities table is read through an index
+     * @param query the repository call
+     * @param literals the SQL literals of the query parameters, in order
+     */
+    private void assertUsesIndex(Runnable query, String... literals) {
+        SqlCapture.STATEMENTS.clear();
+        SqlCapture.capturing = Thread.currentThread();
+        try {
+            query.run();
+        } finally {
+            SqlCapture.capturing = null;
+        }
+        String sql = SqlCapture.STATEMENTS.stream()
+                .filter(statement -> statement.contains(" cities "))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("No query on the cities table was captured"));
+        String plan = jdbcTemplate.queryForObject("EXPLAIN " + bind(sql, literals), String.class);
+        assertTrue(plan != null && plan.contains("CITIES"), () -> "Unexpected plan: " + plan);
+        assertFalse(plan.contains("tableScan"), () -> "The query scans the cities table:\n" + plan);
+    }
+
+    /**
+     * Replace the parameters of a statement by literals
+     * @param sql the statement
+     * @param literals the literals, in parameter order
+     * @return the statement with its literals
+     */
+    private static String bind(String sql, String... literals) {
+        StringBuilder bound = new StringBuilder();
+        int next = 0;
+        for (char c : sql.toCharArray()) {
+            if (c == '?') {
+                assertTrue(next < literals.length, () -> "Missing literal for a parameter of " + sql);
+                bound.append(literals[next++]);
+            } else {
+                bound.append(c);
+            }
+        }
+        return bound.toString();
+    }
+}
@@ -0,0 +1,103 @@
+package fr.diginamic.springdemo.services;
+
+import fr.diginamic.springdemo.SpringDemoApplication;
+import fr.diginamic.springdemo.entities.City;
+import fr.diginamic.springdemo.entities.Department;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Checks of the coalescing of concurrent department creations
+ */
+@SpringBootTest(classes = SpringDemoApplication.class)
+@ActiveProfiles("test")
+public class DepartmentServiceTest {
+
+    @Autowired
+    private DepartmentService departmentService;
+
+    @Autowired
+    private CityService cityService;
+
+    @Autowired
+    private CityIndexLoader cityIndexLoader;
+
+    @SpyBean
+    private DepartmentNameClient departmentNameClient;
+
+    @Test
+    public void coalescesConcurrentCreationsOfTheSameCode() throws Exception {
+        CountDownLatch resolving = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // The first creation holds its remote name lookup until the second one has joined it
+        doAnswer(invocation -> {
+            resolving.countDown();
+            assertTrue(release.await(10, TimeUnit.SECONDS));
+            return invocation.callRealMethod();
+        }).when(departmentNameClient).fetchName("99");
+
+        CompletableFuture<Department> leader = new CompletableFuture<>();
+        Thread leaderThread = new Thread(() -> create(leader));
+        leaderThread.start();
+        assertTrue(resolving.await(10, TimeUnit.SECONDS));
+
+        CompletableFuture<Department> follower = new CompletableFuture<>();
+        Thread followerThread = new Thread(() -> create(follower));
+        followerThread.start();
+        // The follower parks on the creation in flight
+        while (followerThread.getState() != Thread.State.WAITING && !follower.isDone()) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+
+        try {
+            assertEquals("Département 99", leader.get(10, TimeUnit.SECONDS).getName());
+            assertEquals("Département 99", follower.get(10, TimeUnit.SECONDS).getName());
+            verify(departmentNameClient, times(1)).fetchName("99");
+        } finally {
+            departmentService.delete("99");
+        }
+    }
+
+    @Test
+    public void ranksACityAsSoonAsItsCreationReturns() throws Exception {
+        cityIndexLoader.load();
+        Department department = departmentService.create(new Department("98"));
+        City city = new City("Ville de test", 1000);
+        city.setCommuneCode("001");
+        city.setDepartment(department);
+        try {
+            City created = cityService.create(city);
+            // The in-memory rankings are updated before the creation returns
+            assertEquals(1, departmentService.getCityRank("98", created.getId()).rank());
+            assertEquals("Ville de test", departmentService.getTopNCities("98", 1).getFirst().getName());
+        } finally {
+            departmentService.delete("98");
+        }
+    }
+
+    /**
+     * Create the department 99, missing from the bundled names, completing a future with the result
+     * @param result the future
+     */
+    private void create(CompletableFuture<Department> result) {
+        try {
+            result.complete(departmentService.create(new Department("99")));
+        } catch (Exception e) {
+            result.completeExceptionally(e);
+        }
+    }
+}
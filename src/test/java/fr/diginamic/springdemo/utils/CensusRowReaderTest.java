@@ -0,0 +1,86 @@
+package fr.diginamic.springdemo.utils;
+
+import fr.diginamic.springdemo.entities.City;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Checks of the byte-level parsing of the census rows
+ */
+public class CensusRowReaderTest {
+
+    /**
+     * The header line of the census file, skipped by the reader
+     */
+    private static final String HEADER = "Code région;Nom de la région;Code département;Code arrondissement;Code canton;Code commune;Nom de la commune;Population municipale;Population comptée à part;Population totale;\n";
+
+    @Test
+    public void readsPopulationsWithGroupSeparators() throws IOException {
+        List<City> cities = read(
+                "76;Occitanie;34;3;99;172;Montpellier;295\u00A0542;3\u00A0404;298\u00A0946;\n" +
+                "76;Occitanie;34;2;99;301;Sète;43 229;1 060;44 289;\n" +
+                "84;Auvergne-Rhône-Alpes;01;2;08;001;L' Abergement-Clémenciat;767;18;785;\n");
+        assertEquals(List.of(298946, 44289, 785), cities.stream().map(City::getPopulation).toList());
+        assertEquals(List.of("Montpellier", "Sète", "L' Abergement-Clémenciat"), cities.stream().map(City::getName).toList());
+    }
+
+    @Test
+    public void readsCorsicanDepartmentCodes() throws IOException {
+        List<City> cities = read(
+                "94;Corse;2A;1;01;004;Ajaccio;71 361;1 027;72 388;\n" +
+                "94;Corse;2B;2;06;033;Bastia;47 635;1 021;48 656;\n");
+        assertEquals(List.of("2A", "2B"), cities.stream().map(city -> city.getDepartment().getCode()).toList());
+        assertEquals(List.of("004", "033"), cities.stream().map(City::getCommuneCode).toList());
+    }
+
+    @Test
+    public void sharesTheCodeInstances() throws IOException {
+        List<City> cities = read(
+                "76;Occitanie;34;3;99;172;Montpellier;295 542;3 404;298 946;\n" +
+                "76;Occitanie;34;2;99;301;Sète;43 229;1 060;44 289;\n");
+        assertSame(cities.get(0).getDepartment().getCode(), cities.get(1).getDepartment().getCode());
+    }
+
+    @Test
+    public void rejectsMalformedRows() throws IOException {
+        ImportReport report = new ImportReport();
+        List<City> cities = new ArrayList<>();
+        String rows = "76;Occitanie;34;3;99;172;Montpellier;295 542;3 404;298 946;\r\n" +
+                "76;Occitanie;34;2;99;301;Sète;43 229;1 060;n/a;\n" +
+                "76;Occitanie;34;2;99\n" +
+                "\n" +
+                "76;Occitanie;34;1;99;003;Agde;29 000;500;29 500;";
+        new CensusRowReader(ImportUtils.CENSUS_HEADERS).readAll(stream(rows), cities::add, report);
+        assertEquals(List.of("Montpellier", "Agde"), cities.stream().map(City::getName).toList());
+        assertEquals(2, report.getParsed());
+        assertEquals(2, report.getRejected());
+    }
+
+    /**
+     * Read census rows
+     * @param rows the rows, header line excluded
+     * @return the parsed cities
+     */
+    private static List<City> read(String rows) throws IOException {
+        List<City> cities = new ArrayList<>();
+        new CensusRowReader(ImportUtils.CENSUS_HEADERS).readAll(stream(rows), cities::add, new ImportReport());
+        return cities;
+    }
+
+    /**
+     * Get a census file content
+     * @param rows the rows, header line excluded
+     * @return the content, header line included
+     */
+    private static ByteArrayInputStream stream(String rows) {
+        return new ByteArrayInputStream((HEADER + rows).getBytes(StandardCharsets.UTF_8));
+    }
+}
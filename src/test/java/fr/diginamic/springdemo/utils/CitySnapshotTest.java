@@ -0,0 +1,63 @@
+package fr.diginamic.springdemo.utils;
+
+import fr.diginamic.springdemo.entities.dtos.CityDTO;
+import fr.diginamic.springdemo.entities.dtos.CityRow;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Checks of the copy-on-write population snapshot
+ */
+public class CitySnapshotTest {
+
+    /**
+     * The cities of the snapshots
+     */
+    private static final List<CityRow> ROWS = List.of(
+            new CityRow(1, "Montpellier", 298946, "34"),
+            new CityRow(2, "Sète", 44289, "34"),
+            new CityRow(3, "Nîmes", 151001, "30"),
+            new CityRow(4, "Alès", 42994, "30"));
+
+    @Test
+    public void readsInclusiveRangesInPopulationOrder() {
+        CitySnapshot snapshot = CitySnapshot.of(ROWS);
+        assertEquals(List.of("Alès", "Sète", "Nîmes"), names(snapshot.range(42994, 151001)));
+        assertEquals(List.of("Nîmes", "Montpellier"), names(snapshot.greaterThan(44289)));
+        assertEquals(List.of(), snapshot.range(50000, 40000));
+    }
+
+    @Test
+    public void addsAndReplacesCities() {
+        CitySnapshot snapshot = CitySnapshot.of(ROWS);
+        CitySnapshot updated = snapshot.with(new CityRow(5, "Ajaccio", 72388, "2A"))
+                .with(new CityRow(2, "Sète", 160000, "34"));
+        assertEquals(List.of("Alès", "Ajaccio", "Nîmes", "Sète", "Montpellier"), names(updated.range(0, Integer.MAX_VALUE)));
+        assertEquals(List.of("2A"), updated.range(72388, 72388).stream().map(CityDTO::getDepartmentCode).toList());
+        assertEquals(5, updated.size());
+        // The original snapshot is left untouched
+        assertEquals(List.of("Alès", "Sète", "Nîmes", "Montpellier"), names(snapshot.range(0, Integer.MAX_VALUE)));
+    }
+
+    @Test
+    public void removesCities() {
+        CitySnapshot snapshot = CitySnapshot.of(ROWS);
+        CitySnapshot updated = snapshot.without(3);
+        assertEquals(List.of("Alès", "Sète", "Montpellier"), names(updated.range(0, Integer.MAX_VALUE)));
+        assertSame(updated, updated.without(3));
+        assertEquals(4, snapshot.size());
+    }
+
+    /**
+     * Get the names of cities
+     * @param cities the cities
+     * @return the names, in order
+     */
+    private static List<String> names(List<CityDTO> cities) {
+        return cities.stream().map(CityDTO::getName).toList();
+    }
+}
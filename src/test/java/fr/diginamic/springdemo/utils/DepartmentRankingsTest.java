@@ -0,0 +1,74 @@
+package fr.diginamic.springdemo.utils;
+
+import fr.diginamic.springdemo.entities.dtos.CityDTO;
+import fr.diginamic.springdemo.entities.dtos.CityRank;
+import fr.diginamic.springdemo.entities.dtos.CityRow;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Checks of the per-department population rankings
+ */
+public class DepartmentRankingsTest {
+
+    /**
+     * The cities of the rankings, two of them tied
+     */
+    private static final List<CityRow> ROWS = List.of(
+            new CityRow(1, "Montpellier", 298946, "34"),
+            new CityRow(2, "Béziers", 79041, "34"),
+            new CityRow(3, "Sète", 44289, "34"),
+            new CityRow(4, "Agde", 44289, "34"),
+            new CityRow(5, "Lunel", 26925, "34"),
+            new CityRow(6, "Nîmes", 151001, "30"));
+
+    @Test
+    public void ranksTiedCitiesTogether() {
+        DepartmentRankings rankings = DepartmentRankings.of(ROWS);
+        assertEquals(new CityRank(3, "Sète", "34", 44289, 3, 5), rankings.rank("34", 3));
+        assertEquals(new CityRank(4, "Agde", "34", 44289, 3, 5), rankings.rank("34", 4));
+        // The next city comes after both tied ones
+        assertEquals(5, rankings.rank("34", 5).rank());
+        assertEquals(1, rankings.rank("30", 6).rank());
+    }
+
+    @Test
+    public void ignoresCitiesOutsideTheDepartment() {
+        DepartmentRankings rankings = DepartmentRankings.of(ROWS);
+        assertNull(rankings.rank("30", 1));
+        assertNull(rankings.rank("2A", 1));
+        assertNull(rankings.rank("34", 99));
+    }
+
+    @Test
+    public void readsTheMostPopulatedCities() {
+        DepartmentRankings rankings = DepartmentRankings.of(ROWS);
+        assertEquals(List.of("Montpellier", "Béziers"), names(rankings.top("34", 2)));
+        assertEquals(List.of("Nîmes"), names(rankings.top("30", 10)));
+        assertEquals(List.of(), rankings.top("2A", 10));
+    }
+
+    @Test
+    public void movesUpdatedCities() {
+        DepartmentRankings rankings = DepartmentRankings.of(ROWS)
+                .with(new CityRow(5, "Lunel", 100000, "34"))
+                .with(new CityRow(2, "Béziers", 79041, "30"));
+        assertEquals(List.of("Montpellier", "Lunel", "Sète", "Agde"), names(rankings.top("34", 10)));
+        assertEquals(new CityRank(2, "Béziers", "30", 79041, 2, 2), rankings.rank("30", 2));
+        assertEquals(3, rankings.without(6).rank("34", 4).rank());
+        assertEquals(1, rankings.without(6).rank("30", 2).rank());
+    }
+
+    /**
+     * Get the names of cities
+     * @param cities the cities
+     * @return the names, in order
+     */
+    private static List<String> names(List<CityDTO> cities) {
+        return cities.stream().map(CityDTO::getName).toList();
+    }
+}
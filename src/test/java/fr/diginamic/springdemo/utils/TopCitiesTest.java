@@ -0,0 +1,111 @@
+package fr.diginamic.springdemo.utils;
+
+import fr.diginamic.springdemo.entities.City;
+import fr.diginamic.springdemo.entities.Department;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks of the bounded selection of the most populated cities
+ */
+public class TopCitiesTest {
+
+    @Test
+    public void evictsTheLeastPopulatedCities() {
+        TopCities top = new TopCities(3);
+        for (int population : new int[]{50, 10, 70, 30, 90, 20, 60}) {
+            top.offer(city("City " + population, "34", population));
+        }
+        assertEquals(List.of(90, 70, 60), populations(top));
+        assertEquals(7, top.getOffered());
+        assertFalse(top.isComplete());
+    }
+
+    @Test
+    public void breaksTiesOnDepartmentThenName() {
+        TopCities top = new TopCities(2);
+        top.offer(city("Bordeaux", "33", 100));
+        top.offer(city("Agde", "34", 100));
+        top.offer(city("Arles", "13", 100));
+        top.offer(city("Albi", "13", 100));
+        // Equal populations rank by department code, then by name, in ascending order
+        assertEquals(List.of("Albi", "Arles"), top.toSortedList().stream().map(City::getName).toList());
+    }
+
+    @Test
+    public void breaksTiesOnCommuneCodeWhateverTheArrivalOrder() {
+        City first = city("Saint-Martin", "34", 100, "255");
+        City second = city("Saint-Martin", "34", 100, "254");
+        City third = city("Saint-Martin", "34", 100, "256");
+        for (List<City> arrival : List.of(List.of(first, second, third), List.of(third, second, first))) {
+            TopCities top = new TopCities(2);
+            arrival.forEach(top::offer);
+            assertEquals(List.of("254", "255"), top.toSortedList().stream().map(City::getCommuneCode).toList());
+        }
+    }
+
+    @Test
+    public void keepsEveryCityWhenTheLimitCoversTheInput() {
+        TopCities top = new TopCities(10);
+        top.offer(city("Sète", "34", 43000));
+        top.offer(city("Lyon", "69", 520000));
+        top.offer(city("Agde", "34", 29000));
+        assertEquals(List.of(520000, 43000, 29000), populations(top));
+        assertEquals(3, top.size());
+        assertTrue(top.isComplete());
+    }
+
+    @Test
+    public void countsTheCitiesLeftOutOfAMergedSelection() {
+        TopCities first = new TopCities(2);
+        TopCities second = new TopCities(2);
+        for (int population = 1; population <= 5; population++) {
+            first.offer(city("A" + population, "01", population));
+            second.offer(city("B" + population, "02", population * 10));
+        }
+        first.addAll(second);
+        assertEquals(List.of(50, 40), populations(first));
+        assertEquals(10, first.getOffered());
+        assertFalse(first.isComplete());
+    }
+
+    /**
+     * Create a city
+     * @param name the city name
+     * @param code the department code
+     * @param population the population
+     * @return the city
+     */
+    private static City city(String name, String code, int population) {
+        return city(name, code, population, name);
+    }
+
+    /**
+     * Create a city
+     * @param name the city name
+     * @param code the department code
+     * @param population the population
+     * @param communeCode the commune code
+     * @return the city
+     */
+    private static City city(String name, String code, int population, String communeCode) {
+        City city = new City(name, population);
+        city.setCommuneCode(communeCode);
+        city.setDepartment(new Department(code));
+        return city;
+    }
+
+    /**
+     * Get the populations of a selection
+     * @param top the selection
+     * @return the populations, in descending order
+     */
+    private static List<Integer> populations(TopCities top) {
+        return top.toSortedList().stream().map(City::getPopulation).toList();
+    }
+}
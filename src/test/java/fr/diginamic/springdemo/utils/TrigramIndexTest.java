@@ -0,0 +1,64 @@
+package fr.diginamic.springdemo.utils;
+
+import fr.diginamic.springdemo.entities.dtos.CityMatch;
+import fr.diginamic.springdemo.entities.dtos.CityRow;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks of the trigram index of the fuzzy search
+ */
+public class TrigramIndexTest {
+
+    @Test
+    public void toleratesTyposAndAccents() {
+        TrigramIndex index = TrigramIndex.of(List.of(
+                new CityRow(1, "Saint-Étienne", 171924, "42"),
+                new CityRow(2, "Strasbourg", 291313, "67"),
+                new CityRow(3, "Montpellier", 298946, "34")));
+        assertEquals(List.of(1), ids(index.search("st etiene", 5, 0.3)));
+        assertEquals(List.of(3), ids(index.search("monpelier", 5, 0.3)));
+    }
+
+    @Test
+    public void replacesAndRemovesCities() {
+        TrigramIndex index = TrigramIndex.of(List.of(new CityRow(1, "Montpellier", 298946, "34")))
+                .with(new CityRow(2, "Montpellier-le-Vieux", 10, "12"))
+                .with(new CityRow(1, "Sète", 44289, "34"));
+        assertEquals(List.of(2), ids(index.search("montpellier", 5, 0.3)));
+        assertEquals(List.of(1), ids(index.search("sete", 5, 0.3)));
+        assertEquals(List.of(), ids(index.without(1).search("sete", 5, 0.3)));
+        assertEquals(1, index.without(1).size());
+    }
+
+    @Test
+    public void searchesTheSameAfterCompaction() {
+        List<CityRow> rows = new ArrayList<>();
+        for (int id = 0; id < 2048; id++) {
+            rows.add(new CityRow(id, "Ville " + id, id, "01"));
+        }
+        TrigramIndex index = TrigramIndex.of(rows);
+        // The 1024th removal compacts the index, dropping the trigrams only the removed cities had
+        for (int id = 0; id < 1024; id++) {
+            index = index.without(id);
+        }
+        TrigramIndex rebuilt = TrigramIndex.of(rows.subList(1024, 2048));
+        assertEquals(rebuilt.toString(), index.toString());
+        for (String query : new String[]{"ville 2047", "ville 1500", "ville 10", "vile 1750"}) {
+            assertEquals(rebuilt.search(query, 10, 0.3), index.search(query, 10, 0.3), query);
+        }
+    }
+
+    /**
+     * Get the ids of matches
+     * @param matches the matches
+     * @return the ids, in order
+     */
+    private static List<Integer> ids(List<CityMatch> matches) {
+        return matches.stream().map(CityMatch::id).toList();
+    }
+}